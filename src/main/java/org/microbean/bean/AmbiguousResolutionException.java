@@ -65,8 +65,29 @@ public class AmbiguousResolutionException extends ResolutionException {
     this.alternates = alternates == null || alternates.isEmpty() ? List.of() : List.copyOf(alternates);
   }
 
+  protected AmbiguousResolutionException(final Selector selector,
+                                         final Collection<? extends Alternate> alternates,
+                                         final String message,
+                                         final Throwable cause,
+                                         final boolean enableSuppression,
+                                         final boolean writableStackTrace) {
+    super(selector, message, cause, enableSuppression, writableStackTrace);
+    this.alternates = alternates == null || alternates.isEmpty() ? List.of() : List.copyOf(alternates);
+  }
+
   public final Collection<Alternate> alternates() {
     return this.alternates;
   }
 
+  @Override // Throwable
+  public String getMessage() {
+    final String message = super.getMessage();
+    if (message == null && this.alternates != null && !this.alternates.isEmpty()) {
+      // Formatted only on demand; the alternates' toString() methods
+      // may be expensive.
+      return "cannot resolve these alternates: " + this.alternates;
+    }
+    return message;
+  }
+
 }
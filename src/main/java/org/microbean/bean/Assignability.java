@@ -0,0 +1,174 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2022 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.bean;
+
+import java.lang.ref.WeakReference;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import org.microbean.type.Type;
+
+/**
+ * A small, JVM-wide, direct-mapped memo of the results of {@link
+ * Type.CdiSemantics#assignable(Type, Type)}, shared by all {@link
+ * Selector} matching.
+ *
+ * <p>Assignability of parameterized, wildcard and type variable types
+ * is expensive to compute, and the same pairs of required and bean
+ * types are checked over and over, notably after {@link
+ * Beans#clear()} discards cached selections.  Results depend only on
+ * the types involved, so they are never invalidated.</p>
+ *
+ * <p>Pairs are compared and located by identity, as in an {@link
+ * IdentityCache}: a probe costs two identity hashes, one array read
+ * and two reference comparisons, and never invokes {@link
+ * Object#hashCode()} or {@link Object#equals(Object)}.  The {@link
+ * Type}s of {@link Bean}s in a {@link Beans} are {@linkplain
+ * Beans#deduplicationStatistics() deduplicated}, so the same pair is
+ * routinely presented as the very same instances.  A new entry simply
+ * overwrites whatever occupied its slot, without any lock.  Entries
+ * refer to their {@link Type}s only weakly, so the memo never keeps a
+ * {@link Type}, or the {@link Class} or {@link ClassLoader} behind
+ * it, reachable.</p>
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see Selector#selects(Type)
+ *
+ * @see Matcher
+ *
+ * @see IdentityCache
+ */
+final class Assignability {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  private static final int SLOTS = 4096;
+
+  private static final Entry[] ENTRIES = new Entry[SLOTS];
+
+  private static final LongAdder HITS = new LongAdder();
+
+  private static final LongAdder MISSES = new LongAdder();
+
+  private static final LongAdder EVICTIONS = new LongAdder();
+
+
+  /*
+   * Constructors.
+   */
+
+
+  private Assignability() {
+    super();
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Returns the result of calling {@link
+   * Type.CdiSemantics#assignable(Type, Type)
+   * Type.CdiSemantics.INSTANCE.assignable(required, beanType)},
+   * computing it only if it has not been memoized for these very
+   * instances.
+   *
+   * @param required the required type; may be {@code null} in
+   * which case nothing is memoized
+   *
+   * @param beanType the bean type; may be {@code null} in which case
+   * nothing is memoized
+   *
+   * @return {@code true} if {@code beanType} is assignable to {@code
+   * required}
+   *
+   * @threadsafety This method is safe for concurrent use by multiple
+   * threads.
+   */
+  static final boolean assignable(final Type<?> required, final Type<?> beanType) {
+    if (required == null || beanType == null) {
+      return Type.CdiSemantics.INSTANCE.assignable(required, beanType);
+    }
+    final int slot = slot(required, beanType);
+    final Entry entry = ENTRIES[slot];
+    if (entry != null && entry.get() == required && entry.beanType.get() == beanType) {
+      HITS.increment();
+      return entry.assignable;
+    }
+    MISSES.increment();
+    final boolean assignable = Type.CdiSemantics.INSTANCE.assignable(required, beanType);
+    if (entry != null) {
+      EVICTIONS.increment();
+    }
+    // Entries are immutable apart from their referents being cleared,
+    // so a racing reader sees either a usable entry or a miss.
+    ENTRIES[slot] = new Entry(required, beanType, assignable);
+    return assignable;
+  }
+
+  /**
+   * Returns a {@link CacheStatistics} describing the memo at the
+   * moment of invocation.
+   *
+   * @return a {@link CacheStatistics}; never {@code null}
+   */
+  static final CacheStatistics statistics() {
+    int size = 0;
+    for (final Entry entry : ENTRIES) {
+      if (entry != null && entry.get() != null && entry.beanType.get() != null) {
+        ++size;
+      }
+    }
+    return new CacheStatistics(HITS.sum(), MISSES.sum(), EVICTIONS.sum(), size);
+  }
+
+  private static final int slot(final Type<?> required, final Type<?> beanType) {
+    final int h = System.identityHashCode(required) * 31 + System.identityHashCode(beanType);
+    return (h ^ (h >>> 16)) & (SLOTS - 1);
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  // Refers weakly to the required type (as itself) and to the bean
+  // type.
+  private static final class Entry extends WeakReference<Type<?>> {
+
+    private final WeakReference<Type<?>> beanType;
+
+    private final boolean assignable;
+
+    private Entry(final Type<?> required, final Type<?> beanType, final boolean assignable) {
+      super(required);
+      this.beanType = new WeakReference<>(beanType);
+      this.assignable = assignable;
+    }
+
+  }
+
+}
@@ -0,0 +1,536 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2022 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.bean;
+
+import java.util.Collection;
+import java.util.Objects;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+import java.util.function.Function;
+
+import org.microbean.qualifier.Qualifier;
+
+import static org.microbean.scope.Scope.SINGLETON;
+
+/**
+ * An {@link Instances} implementation that creates at most one
+ * instance per {@link Bean} governed by a particular scope and stores
+ * it in slots indexed by the {@link Bean}'s {@linkplain
+ * Beans#ordinal(Bean) ordinal} within a {@link Beans}.
+ *
+ * <p>Only {@link Bean}s whose {@linkplain Id#governingScopeId()
+ * governing scope identifier} is the one supplied at construction
+ * time (by default that of the singleton scope) have their instances
+ * stored.  The instance of any other {@link Bean} is created anew
+ * each time it is {@linkplain #supplyInstance(Selector, Bean)
+ * supplied}, and is never {@linkplain #findInstance(Bean)
+ * found}.</p>
+ *
+ * <p>Reading an instance that has already been created involves no
+ * locking and, for a {@link Bean} obtained from the {@link Beans},
+ * no hashing, since its {@linkplain Beans#ordinal(Bean) ordinal} is
+ * found by identity: slots are held in fixed-size chunks of an {@link
+ * AtomicReferenceArray}, and chunks never move once allocated, so
+ * the store grows without copying or blocking its readers.  Only
+ * {@link Bean}s contained by the {@link Beans} have instances.  Once
+ * a {@link Bean} has been {@linkplain Beans#remove(Collection)
+ * removed} from the {@link Beans}, its instance is evicted, without
+ * being destroyed, the next time any instance is created.</p>
+ *
+ * <p>Each {@link BeanInstances} (together with those {@linkplain
+ * #withSelector(Selector) derived} from it) is typically the store
+ * of a single scope.  Within it, creation is single-flight: when
+ * several threads request the instance of the same {@link Bean}
+ * before it exists, exactly one of them creates it, and the others
+ * wait for that creation to complete and then share its result.
+ * Waiting threads park, without holding any monitor, so waiting
+ * virtual threads do not pin their carriers.  If creation fails, all
+ * waiting threads receive the failure and the next request tries
+ * again.</p>
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see Beans#ordinal(Bean)
+ */
+public final class BeanInstances implements Instances {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  // Denotes an instance of null.
+  private static final Object NULL = new Object();
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  private final Beans beans;
+
+  private final Qualifier<?> scopeId;
+
+  private final Function<? super Bean<?>, ? extends Creation<?>> creations;
+
+  private final Store store;
+
+  private final Selector selector;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link BeanInstances} that stores the instances of
+   * singleton {@link Bean}s and supplies {@code null} {@link
+   * Creation}s to the {@link Factory Factories} of the {@link Bean}s
+   * whose instances it creates.
+   *
+   * @param beans the {@link Beans} whose {@link Bean}s' instances
+   * will be stored; must not be {@code null}
+   *
+   * @exception NullPointerException if {@code beans} is {@code null}
+   *
+   * @see #BeanInstances(Beans, Qualifier, Function)
+   */
+  public BeanInstances(final Beans beans) {
+    this(beans, SINGLETON.id(), null);
+  }
+
+  /**
+   * Creates a new {@link BeanInstances} that stores the instances of
+   * singleton {@link Bean}s.
+   *
+   * @param beans the {@link Beans} whose {@link Bean}s' instances
+   * will be stored; must not be {@code null}
+   *
+   * @param creations a {@link Function} returning the {@link
+   * Creation} to supply to the {@link Factory} of a given {@link
+   * Bean}; may be {@code null} in which case {@code null} {@link
+   * Creation}s will be supplied
+   *
+   * @exception NullPointerException if {@code beans} is {@code null}
+   *
+   * @see #BeanInstances(Beans, Qualifier, Function)
+   */
+  public BeanInstances(final Beans beans, final Function<? super Bean<?>, ? extends Creation<?>> creations) {
+    this(beans, SINGLETON.id(), creations);
+  }
+
+  /**
+   * Creates a new {@link BeanInstances}.
+   *
+   * @param beans the {@link Beans} whose {@link Bean}s' instances
+   * will be stored; must not be {@code null}
+   *
+   * @param scopeId the {@linkplain Id#governingScopeId() governing
+   * scope identifier} of the {@link Bean}s whose instances will be
+   * stored; must not be {@code null}
+   *
+   * @param creations a {@link Function} returning the {@link
+   * Creation} to supply to the {@link Factory} of a given {@link
+   * Bean}; may be {@code null} in which case {@code null} {@link
+   * Creation}s will be supplied
+   *
+   * @exception NullPointerException if {@code beans} or {@code
+   * scopeId} is {@code null}
+   */
+  public BeanInstances(final Beans beans,
+                       final Qualifier<?> scopeId,
+                       final Function<? super Bean<?>, ? extends Creation<?>> creations) {
+    super();
+    this.beans = Objects.requireNonNull(beans, "beans");
+    this.scopeId = Objects.requireNonNull(scopeId, "scopeId");
+    this.creations = creations == null ? b -> null : creations;
+    this.store = new Store(beans);
+    this.selector = null;
+  }
+
+  private BeanInstances(final BeanInstances instances, final Selector selector) {
+    super();
+    this.beans = instances.beans;
+    this.scopeId = instances.scopeId;
+    this.creations = instances.creations;
+    this.store = instances.store;
+    this.selector = selector;
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  @Override // Request<Instances>
+  public final Selector selector() {
+    return this.selector;
+  }
+
+  /**
+   * Returns the {@linkplain Id#governingScopeId() governing scope
+   * identifier} of the {@link Bean}s whose instances this {@link
+   * BeanInstances} stores.
+   *
+   * @return the governing scope identifier; never {@code null}
+   *
+   * @nullability This method never returns {@code null}.
+   *
+   * @idempotency This method is idempotent and deterministic.
+   *
+   * @threadsafety This method is safe for concurrent use by multiple
+   * threads.
+   */
+  public final Qualifier<?> scopeId() {
+    return this.scopeId;
+  }
+
+  /**
+   * Returns a {@link BeanInstances} that shares this {@link
+   * BeanInstances}' instances but whose {@link #selector()} method
+   * returns the supplied {@link Selector}.
+   *
+   * @param selector the {@link Selector}; may be {@code null}
+   *
+   * @return a {@link BeanInstances}; never {@code null}
+   *
+   * @nullability This method never returns {@code null}.
+   *
+   * @idempotency This method is idempotent and deterministic.
+   *
+   * @threadsafety This method is safe for concurrent use by multiple
+   * threads.
+   */
+  @Override // Request<Instances>
+  public final BeanInstances withSelector(final Selector selector) {
+    return Objects.equals(this.selector, selector) ? this : new BeanInstances(this, selector);
+  }
+
+  /**
+   * Returns the instance already created for the {@link Bean} that
+   * the {@link Beans} supplied at construction time {@linkplain
+   * Beans#bean(Selector) resolves} for the supplied {@link Selector},
+   * or {@code null} if there is none.
+   *
+   * @param <I> the type of the instance
+   *
+   * @param selector the {@link Selector}; may be {@code null}
+   *
+   * @return the instance, or {@code null}
+   *
+   * @exception ResolutionException if resolution fails
+   *
+   * @nullability This method may return {@code null}.
+   *
+   * @threadsafety This method is safe for concurrent use by multiple
+   * threads.
+   *
+   * @see #findInstance(Bean)
+   */
+  @Override // Instances
+  @SuppressWarnings("unchecked")
+  public final <I> I findInstance(final Selector selector) {
+    final Bean<?> bean = this.beans.bean(selector);
+    return bean == null ? null : (I)this.findInstance(bean);
+  }
+
+  /**
+   * Returns the instance already created for the supplied {@link
+   * Bean}, or {@code null} if there is none, as is always the case
+   * for a {@link Bean} not governed by this {@link BeanInstances}'
+   * {@linkplain #scopeId() scope}.
+   *
+   * <p>This method never creates an instance and never blocks; if
+   * another thread is creating the instance, {@code null} is
+   * returned.</p>
+   *
+   * @param <I> the type of the instance
+   *
+   * @param bean the {@link Bean}; must not be {@code null}
+   *
+   * @return the instance, or {@code null}
+   *
+   * @exception NullPointerException if {@code bean} is {@code null}
+   *
+   * @nullability This method may return {@code null}.
+   *
+   * @threadsafety This method is safe for concurrent use by multiple
+   * threads.
+   */
+  @Override // Instances
+  public final <I> I findInstance(final Bean<I> bean) {
+    final int ordinal = this.beans.ordinal(Objects.requireNonNull(bean, "bean"));
+    if (ordinal < 0) {
+      return null;
+    }
+    final Object instance = this.store.get(ordinal);
+    return instance instanceof Pending ? null : instance(instance);
+  }
+
+  /**
+   * Returns the instance for the supplied {@link Bean}, creating it
+   * if it has not yet been created.
+   *
+   * <p>If the {@link Bean}'s {@link Factory} has a {@linkplain
+   * Singleton#singleton() singleton}, it is used as the instance.
+   * Otherwise the instance is {@linkplain Factory#create(Creation)
+   * created} with the {@link Creation} that the {@link Function}
+   * supplied at construction time returns for the {@link
+   * Bean}.</p>
+   *
+   * <p>If another thread is already creating the instance, this
+   * method waits for it to finish and returns the instance it
+   * created.</p>
+   *
+   * <p>If the {@link Bean} is not governed by this {@link
+   * BeanInstances}' {@linkplain #scopeId() scope}, its instance is
+   * created anew on every invocation and is not stored.</p>
+   *
+   * @param <I> the type of the instance
+   *
+   * @param selector the {@link Selector} on whose behalf the instance
+   * is being supplied; if {@code bean} is {@code null} it is
+   * {@linkplain Beans#bean(Selector) resolved} to a {@link Bean} by
+   * the {@link Beans} supplied at construction time; may be {@code
+   * null}
+   *
+   * @param bean the {@link Bean}; may be {@code null}
+   *
+   * @return the instance, or {@code null}
+   *
+   * @exception ResolutionException if {@code bean} is {@code null}
+   * and resolution fails
+   *
+   * @exception IllegalArgumentException if {@code bean} is not
+   * contained by the {@link Beans} supplied at construction time
+   *
+   * @exception IllegalStateException if creation of the instance
+   * requires the instance itself
+   *
+   * @nullability This method may return {@code null}.
+   *
+   * @threadsafety This method is safe for concurrent use by multiple
+   * threads.
+   */
+  @Override // Instances
+  @SuppressWarnings("unchecked")
+  public final <I> I supplyInstance(final Selector selector, Bean<I> bean) {
+    if (bean == null) {
+      bean = (Bean<I>)this.beans.bean(selector);
+      if (bean == null) {
+        return null;
+      }
+    }
+    if (!this.scopeId.equals(bean.id().governingScopeId())) {
+      return this.produce(bean);
+    }
+    // The ordinal is looked up once, so that every access below uses
+    // the same slot even if the Bean is removed meanwhile.
+    final int ordinal = this.beans.ordinal(bean);
+    if (ordinal < 0) {
+      throw new IllegalArgumentException("bean: " + bean);
+    }
+    while (true) {
+      Object instance = this.store.get(ordinal);
+      if (instance == null) {
+        this.store.evictRemoved(this.beans);
+        final Pending pending = new Pending();
+        instance = this.store.putIfAbsent(ordinal, pending);
+        if (instance == pending) {
+          return this.create(bean, ordinal, pending);
+        }
+      }
+      if (instance instanceof Pending pending) {
+        pending.await(bean);
+        // Loop to read the instance that the creating thread stored.
+      } else {
+        return instance(instance);
+      }
+    }
+  }
+
+  private final <I> I create(final Bean<I> bean, final int ordinal, final Pending pending) {
+    final I i;
+    try {
+      i = this.produce(bean);
+    } catch (final Throwable t) {
+      // Let a subsequent request try again.  t may be a checked
+      // exception thrown sneakily; it is rethrown as-is.
+      this.store.replace(ordinal, pending, null);
+      pending.fail(t);
+      throw t;
+    }
+    this.store.replace(ordinal, pending, i == null ? NULL : i);
+    pending.complete();
+    return i;
+  }
+
+  @SuppressWarnings("unchecked")
+  private final <I> I produce(final Bean<I> bean) {
+    final Factory<I> factory = bean.factory();
+    final I singleton = factory.singleton();
+    return singleton == null ? Pipeline.createWith(factory, (Creation<I>)this.creations.apply(bean)) : singleton;
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  @SuppressWarnings("unchecked")
+  private static final <I> I instance(final Object instance) {
+    return instance == NULL ? null : (I)instance;
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  // Instances by Bean ordinal, in chunks that never move once
+  // allocated.
+  private static final class Store {
+
+    private static final int CHUNK_SHIFT = 6;
+
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    // Serializes growth of chunks and eviction.
+    private final ReentrantLock lock;
+
+    private volatile AtomicReferenceArray<Object>[] chunks;
+
+    // The epoch of the Beans as of the last eviction.
+    private volatile long epoch;
+
+    private Store(final Beans beans) {
+      super();
+      this.lock = new ReentrantLock();
+      this.chunks = chunks(null, (beans.ordinalLimit() + CHUNK_MASK) >>> CHUNK_SHIFT);
+      this.epoch = beans.epoch();
+    }
+
+    // Returns the stored instance, NULL, a Pending, or null if there
+    // is none.
+    private final Object get(final int ordinal) {
+      final AtomicReferenceArray<Object>[] chunks = this.chunks; // volatile read
+      final int chunk = ordinal >>> CHUNK_SHIFT;
+      return chunk < chunks.length ? chunks[chunk].get(ordinal & CHUNK_MASK) : null;
+    }
+
+    // Stores the supplied instance, NULL, or Pending unless one is
+    // already stored, and returns whichever is stored.
+    private final Object putIfAbsent(final int ordinal, final Object instance) {
+      final AtomicReferenceArray<Object> chunk = this.chunk(ordinal >>> CHUNK_SHIFT);
+      final int index = ordinal & CHUNK_MASK;
+      return chunk.compareAndSet(index, null, instance) ? instance : chunk.get(index);
+    }
+
+    // Replaces the supplied expected value, which must be stored, with
+    // the supplied instance, NULL, or null.
+    private final void replace(final int ordinal, final Object expected, final Object instance) {
+      this.chunk(ordinal >>> CHUNK_SHIFT).compareAndSet(ordinal & CHUNK_MASK, expected, instance);
+    }
+
+    // If the supplied Beans has changed since this method last ran,
+    // clears the slots of Beans it no longer contains.  Removed
+    // ordinals are never reused, so such slots would otherwise hold
+    // their instances forever.  A slot still being created into is
+    // left alone, and the epoch is then not advanced, so that the
+    // next creation looks again.
+    private final void evictRemoved(final Beans beans) {
+      final long epoch = beans.epoch();
+      if (epoch == this.epoch) { // volatile read
+        return;
+      }
+      this.lock.lock();
+      try {
+        if (epoch == this.epoch) { // volatile read
+          return;
+        }
+        boolean pending = false;
+        final AtomicReferenceArray<Object>[] chunks = this.chunks; // volatile read
+        for (int c = 0; c < chunks.length; c++) {
+          final AtomicReferenceArray<Object> chunk = chunks[c];
+          for (int i = 0; i < CHUNK_SIZE; i++) {
+            final Object instance = chunk.get(i);
+            if (instance != null && beans.bean((c << CHUNK_SHIFT) | i) == null) {
+              if (instance instanceof Pending) {
+                pending = true;
+              } else {
+                chunk.compareAndSet(i, instance, null);
+              }
+            }
+          }
+        }
+        if (!pending) {
+          this.epoch = epoch; // volatile write
+        }
+      } finally {
+        this.lock.unlock();
+      }
+    }
+
+    private final AtomicReferenceArray<Object> chunk(final int chunk) {
+      AtomicReferenceArray<Object>[] chunks = this.chunks; // volatile read
+      if (chunk < chunks.length) {
+        return chunks[chunk];
+      }
+      this.lock.lock();
+      try {
+        chunks = this.chunks; // volatile read
+        if (chunk >= chunks.length) {
+          chunks = chunks(chunks, Math.max(chunk + 1, chunks.length << 1));
+          this.chunks = chunks; // volatile write
+        }
+      } finally {
+        this.lock.unlock();
+      }
+      return chunks[chunk];
+    }
+
+    @SuppressWarnings("unchecked")
+    private static final AtomicReferenceArray<Object>[] chunks(final AtomicReferenceArray<Object>[] old, final int length) {
+      final AtomicReferenceArray<Object>[] chunks = (AtomicReferenceArray<Object>[])new AtomicReferenceArray<?>[length];
+      int i = 0;
+      if (old != null) {
+        // Existing chunks are shared, not copied, so no concurrent
+        // write to them can be lost.
+        System.arraycopy(old, 0, chunks, 0, old.length);
+        i = old.length;
+      }
+      for (; i < length; i++) {
+        chunks[i] = new AtomicReferenceArray<>(CHUNK_SIZE);
+      }
+      return chunks;
+    }
+
+  }
+
+}
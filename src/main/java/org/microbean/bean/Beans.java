@@ -16,27 +16,47 @@
  */
 package org.microbean.bean;
 
+import java.lang.ref.WeakReference;
+
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
+import java.util.concurrent.locks.ReentrantLock;
+
 import java.util.function.BiFunction;
+import java.util.function.Function;
 import java.util.function.Predicate;
 
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import org.microbean.qualifier.Qualifiers;
+
 import org.microbean.type.JavaType;
 import org.microbean.type.Type;
 
 import static org.microbean.scope.Scope.SINGLETON;
 
 /**
- * A read-only repository of {@link Bean} instances.
+ * A repository of {@link Bean} instances.
+ *
+ * <p>The {@link Bean}s contained by a {@link Beans} form an immutable,
+ * epoch-versioned snapshot.  {@link Bean}s may be {@linkplain
+ * #add(Collection) added} or {@linkplain #remove(Collection) removed},
+ * each such change publishing a new snapshot; readers never block and
+ * always see some complete snapshot.</p>
  *
  * @author <a href="https://about.me/lairdnelson"
  * target="_parent">Laird Nelson</a>
@@ -49,15 +69,61 @@ public final class Beans implements AutoCloseable {
 
 
   /*
-   * Instance fields.
+   * Static fields.
    */
 
 
-  private final List<Bean<?>> beans;
+  // The number of distinct Selectors neither sealed nor cached at or
+  // above which a batch resolution may be split across the common
+  // fork-join pool.
+  private static final int PARALLEL_BATCH_THRESHOLD = 256;
+
+  private static final int[] EMPTY_POSITIONS = new int[0];
+
+  // The Selections of Selector.ofDefault(Class) Selectors, by Class
+  // and then by Beans.  A single, static ClassValue is used so that
+  // no Class ever refers to a particular Beans' ClassValue, which
+  // would keep that Beans, and every Selection and Snapshot it ever
+  // associated with the Class, reachable for as long as the Class
+  // is.
+  private static final ClassValue<DefaultSelections> DEFAULT_SELECTIONS = new ClassValue<>() {
+      @Override // ClassValue<DefaultSelections>
+      protected final DefaultSelections computeValue(final Class<?> c) {
+        return new DefaultSelections();
+      }
+    };
+
+
+  /*
+   * Instance fields.
+   */
+
 
   private final Resolver resolver;
 
-  private final ConcurrentMap<Selector, List<Bean<?>>> cache;
+  private final BoundedCache<Selector, Selection> cache;
+
+  // Holds the Selections that select no Beans at all, so that probes
+  // for absent Beans neither compete with nor evict those in cache.
+  private final BoundedCache<Selector, Selection> unsatisfied;
+
+  // Fronts cache and sealed by Selector identity.
+  private final IdentityCache<Selector, Selection> front;
+
+  // Identifies this Beans' entries in DEFAULT_SELECTIONS; replaced by
+  // clear() and seal(Collection) so as to discard them all.
+  private volatile Object defaultSelectionsKey;
+
+  // Written only while holding lock; replaced by remove(Collection)
+  // so that the metadata of removed Beans is not retained.
+  private volatile Deduplicator deduplicator;
+
+  // Serializes writers (add, remove, seal); readers never acquire it.
+  private final ReentrantLock lock;
+
+  private volatile Snapshot snapshot;
+
+  private volatile PerfectHashMap<Selector, Selection> sealed;
 
 
   /*
@@ -74,18 +140,46 @@ public final class Beans implements AutoCloseable {
   }
 
   public Beans(final Collection<? extends Bean<?>> beans, final Resolver resolver) {
+    this(beans, resolver, 0);
+  }
+
+  /**
+   * Creates a new {@link Beans}.
+   *
+   * @param beans the {@link Bean}s to contain; may be {@code null}
+   *
+   * @param resolver the {@link Resolver} to use; may be {@code null}
+   * in which case a new {@link Resolver} will be used instead
+   *
+   * @param maximumCacheSize the maximum number of {@link Selector}s
+   * whose selected {@link Bean}s will be cached at any one time; if
+   * less than or equal to {@code 0}, the cache will be unbounded
+   *
+   * @see #cacheStatistics()
+   */
+  public Beans(final Collection<? extends Bean<?>> beans, final Resolver resolver, final int maximumCacheSize) {
     super();
-    this.cache = new ConcurrentHashMap<>();
+    this.cache = new BoundedCache<>(maximumCacheSize);
+    this.unsatisfied = new BoundedCache<>(maximumCacheSize);
+    this.front = new IdentityCache<>(maximumCacheSize <= 0 ? 1024 : maximumCacheSize);
+    this.lock = new ReentrantLock();
+    this.deduplicator = new Deduplicator();
+    this.defaultSelectionsKey = new Object();
     this.resolver = resolver == null ? new Resolver() : resolver;
     final Bean<?> resolverBean = this.resolver instanceof BeanSource<?> bs ? bs.bean() : Bean.of(this.resolver);
     if (beans == null || beans.isEmpty()) {
-      this.beans = List.of(Bean.of(this), resolverBean);
+      this.snapshot =
+        new Snapshot(0L,
+                     List.of(this.deduplicator.deduplicate(Bean.of(this)), this.deduplicator.deduplicate(resolverBean)),
+                     null);
     } else {
       final ArrayList<Bean<?>> newBeans = new ArrayList<>(beans.size() + 2);
-      newBeans.add(Bean.of(this));
-      newBeans.add(resolverBean);
-      newBeans.addAll(beans);
-      this.beans = Collections.unmodifiableList(newBeans);
+      newBeans.add(this.deduplicator.deduplicate(Bean.of(this)));
+      newBeans.add(this.deduplicator.deduplicate(resolverBean));
+      for (final Bean<?> bean : beans) {
+        newBeans.add(this.deduplicator.deduplicate(bean));
+      }
+      this.snapshot = new Snapshot(0L, Collections.unmodifiableList(newBeans), null);
     }
   }
 
@@ -113,7 +207,7 @@ public final class Beans implements AutoCloseable {
    * threads.
    */
   public final Stream<Bean<?>> beans() {
-    return this.beans.stream();
+    return this.snapshot.beans.stream(); // volatile read
   }
 
   /**
@@ -140,7 +234,298 @@ public final class Beans implements AutoCloseable {
    * threads.
    */
   public final Stream<Bean<?>> beans(final Selector selector) {
-    return selector == null ? this.beans() : this.cache.computeIfAbsent(selector, this::computeCachedBeans).stream();
+    return selector == null ? this.beans() : this.selection(selector).beans().stream();
+  }
+
+  /**
+   * Returns the epoch of the snapshot of {@link Bean}s currently
+   * contained by this {@link Beans}.
+   *
+   * <p>The epoch starts at {@code 0L} and is incremented each time
+   * {@link Bean}s are {@linkplain #add(Collection) added} or
+   * {@linkplain #remove(Collection) removed}.</p>
+   *
+   * @return the current epoch
+   *
+   * @idempotency This method is idempotent but not deterministic.
+   *
+   * @threadsafety This method is safe for concurrent use by multiple
+   * threads.
+   */
+  public final long epoch() {
+    return this.snapshot.epoch; // volatile read
+  }
+
+  /**
+   * Adds the supplied {@link Bean}s to this {@link Beans}, publishing
+   * a new snapshot and returning its {@linkplain #epoch() epoch}.
+   *
+   * <p>The new snapshot, including its indexes, is built from scratch
+   * (copy-on-write), so this method is intended for occasional
+   * deltas, such as the deployment of a plugin, rather than for
+   * frequent use.  Cached results for {@link Selector}s that select
+   * none of the supplied {@link Bean}s are carried forward; all others
+   * are discarded.  Readers are never blocked.</p>
+   *
+   * @param beans the {@link Bean}s to add; may be {@code null};
+   * {@code null} elements are ignored
+   *
+   * @return the epoch of the current snapshot, which will be
+   * unchanged if there was nothing to add
+   *
+   * @exception IllegalStateException if this {@link Beans} has been
+   * {@linkplain #seal(Collection) sealed}
+   *
+   * @idempotency This method is neither idempotent nor deterministic.
+   *
+   * @threadsafety This method is safe for concurrent use by multiple
+   * threads.
+   *
+   * @see #remove(Collection)
+   */
+  public final long add(final Collection<? extends Bean<?>> beans) {
+    this.lock.lock();
+    try {
+      final Snapshot old = this.checkUnsealed();
+      if (beans == null || beans.isEmpty()) {
+        return old.epoch;
+      }
+      final List<Bean<?>> added = new ArrayList<>(beans.size());
+      for (final Bean<?> bean : beans) {
+        if (bean != null) {
+          added.add(this.deduplicator.deduplicate(bean));
+        }
+      }
+      if (added.isEmpty()) {
+        return old.epoch;
+      }
+      final ArrayList<Bean<?>> newBeans = new ArrayList<>(old.beans.size() + added.size());
+      newBeans.addAll(old.beans);
+      newBeans.addAll(added);
+      return this.publish(old, Collections.unmodifiableList(newBeans), added);
+    } finally {
+      this.lock.unlock();
+    }
+  }
+
+  /**
+   * Removes every {@link Bean} {@linkplain Object#equals(Object) equal
+   * to} any of the supplied {@link Bean}s from this {@link Beans},
+   * publishing a new snapshot and returning its {@linkplain #epoch()
+   * epoch}.
+   *
+   * <p>The new snapshot, including its indexes, is built from scratch
+   * (copy-on-write), so this method is intended for occasional
+   * deltas, such as the undeployment of a plugin, rather than for
+   * frequent use.  Cached results for {@link Selector}s that select
+   * none of the removed {@link Bean}s are carried forward; all others
+   * are discarded.  Readers are never blocked.  The canonical
+   * metadata kept for {@linkplain #deduplicationStatistics()
+   * deduplication} is pruned to that of the remaining {@link
+   * Bean}s.</p>
+   *
+   * @param beans the {@link Bean}s to remove; may be {@code null}
+   *
+   * @return the epoch of the current snapshot, which will be
+   * unchanged if there was nothing to remove
+   *
+   * @exception IllegalStateException if this {@link Beans} has been
+   * {@linkplain #seal(Collection) sealed}
+   *
+   * @idempotency This method is neither idempotent nor deterministic.
+   *
+   * @threadsafety This method is safe for concurrent use by multiple
+   * threads.
+   *
+   * @see #add(Collection)
+   */
+  public final long remove(final Collection<? extends Bean<?>> beans) {
+    this.lock.lock();
+    try {
+      final Snapshot old = this.checkUnsealed();
+      if (beans == null || beans.isEmpty()) {
+        return old.epoch;
+      }
+      final Set<Bean<?>> doomed = new HashSet<>(beans);
+      final ArrayList<Bean<?>> newBeans = new ArrayList<>(old.beans.size());
+      final List<Bean<?>> removed = new ArrayList<>();
+      for (final Bean<?> bean : old.beans) {
+        if (doomed.contains(bean)) {
+          removed.add(bean);
+        } else {
+          newBeans.add(bean);
+        }
+      }
+      if (removed.isEmpty()) {
+        return old.epoch;
+      }
+      this.deduplicator = this.deduplicator.retaining(newBeans);
+      return this.publish(old, Collections.unmodifiableList(newBeans), removed);
+    } finally {
+      this.lock.unlock();
+    }
+  }
+
+  /**
+   * Returns the ordinal of the supplied {@link Bean} in this {@link
+   * Beans}, or {@code -1} if it is not contained.
+   *
+   * <p>Every contained {@link Bean} has a distinct, non-negative
+   * ordinal that is less than the value returned by the {@link
+   * #ordinalLimit()} method and that does not change for as long as
+   * the {@link Bean} is contained, so per-{@link Bean} data may be
+   * kept in arrays indexed by ordinal rather than in maps keyed by
+   * {@link Bean}.  Ordinals are dense when {@link Bean}s are only
+   * ever added; a {@linkplain #remove(Collection) removed} {@link
+   * Bean}'s ordinal is never reused.</p>
+   *
+   * <p>The ordinal of a {@link Bean} obtained from this {@link Beans}
+   * is found by identity, without hashing the {@link Bean}.  Looking
+   * up any other {@link Bean} involves {@linkplain
+   * Object#hashCode() hashing} it.</p>
+   *
+   * @param bean the {@link Bean}; may be {@code null} in which case
+   * {@code -1} will be returned
+   *
+   * @return the ordinal of the supplied {@link Bean}, or {@code -1}
+   *
+   * @idempotency This method is idempotent but not deterministic.
+   *
+   * @threadsafety This method is safe for concurrent use by multiple
+   * threads.
+   *
+   * @see #bean(int)
+   *
+   * @see #ordinalLimit()
+   */
+  public final int ordinal(final Bean<?> bean) {
+    return bean == null ? -1 : this.snapshot.ordinal(bean); // volatile read
+  }
+
+  /**
+   * Returns the {@link Bean} with the supplied {@linkplain
+   * #ordinal(Bean) ordinal}, or {@code null} if there is none.
+   *
+   * @param ordinal the ordinal
+   *
+   * @return the {@link Bean} with the supplied ordinal, or {@code
+   * null} if it has been {@linkplain #remove(Collection) removed} or
+   * if {@code ordinal} is negative or not less than the value
+   * returned by the {@link #ordinalLimit()} method
+   *
+   * @nullability This method may return {@code null}.
+   *
+   * @idempotency This method is idempotent but not deterministic.
+   *
+   * @threadsafety This method is safe for concurrent use by multiple
+   * threads.
+   *
+   * @see #ordinal(Bean)
+   */
+  public final Bean<?> bean(final int ordinal) {
+    final Bean<?>[] beansByOrdinal = this.snapshot.beansByOrdinal; // volatile read
+    return ordinal < 0 || ordinal >= beansByOrdinal.length ? null : beansByOrdinal[ordinal];
+  }
+
+  /**
+   * Returns one more than the greatest {@linkplain #ordinal(Bean)
+   * ordinal} ever assigned by this {@link Beans}, suitable for sizing
+   * arrays indexed by ordinal.
+   *
+   * <p>The value returned grows when {@link Bean}s are {@linkplain
+   * #add(Collection) added} and never shrinks.</p>
+   *
+   * @return one more than the greatest ordinal ever assigned
+   *
+   * @idempotency This method is idempotent but not deterministic.
+   *
+   * @threadsafety This method is safe for concurrent use by multiple
+   * threads.
+   *
+   * @see #ordinal(Bean)
+   */
+  public final int ordinalLimit() {
+    return this.snapshot.beansByOrdinal.length; // volatile read
+  }
+
+  /**
+   * Returns a {@link DeduplicationStatistics} describing how much
+   * {@link Bean} metadata was found to be duplicated, and replaced by
+   * shared canonical instances, as {@link Bean}s were loaded into
+   * this {@link Beans} at construction time or {@linkplain
+   * #add(Collection) later}.
+   *
+   * <p>{@link Bean}s so loaded are {@linkplain Object#equals(Object)
+   * equal to}, but not necessarily identical to, the {@link Bean}s
+   * that were supplied.</p>
+   *
+   * @return a {@link DeduplicationStatistics}
+   *
+   * @nullability This method never returns {@code null}.
+   *
+   * @idempotency This method is idempotent but not deterministic.
+   *
+   * @threadsafety This method is safe for concurrent use by multiple
+   * threads.
+   */
+  public final DeduplicationStatistics deduplicationStatistics() {
+    return this.deduplicator.statistics();
+  }
+
+  /**
+   * Returns a {@link CacheStatistics} describing the cache of {@link
+   * Bean}s {@linkplain #beans(Selector) selected by} {@link
+   * Selector}s at the moment of invocation.
+   *
+   * <p>Statistics are cumulative and are not reset by the {@link
+   * #clear()} method.  Lookups satisfied by identity, because the
+   * very same {@link Selector} instance (such as an {@linkplain
+   * Selector#intern() interned} one) was presented before, do not
+   * reach the cache and are not counted.  {@link Selector}s that
+   * select no {@link Bean}s at all are cached separately; see {@link
+   * #unsatisfiedCacheStatistics()}.</p>
+   *
+   * @return a {@link CacheStatistics}
+   *
+   * @nullability This method never returns {@code null}.
+   *
+   * @idempotency This method is idempotent but not deterministic.
+   *
+   * @threadsafety This method is safe for concurrent use by multiple
+   * threads.
+   *
+   * @see #Beans(Collection, Resolver, int)
+   */
+  public final CacheStatistics cacheStatistics() {
+    return this.cache.statistics();
+  }
+
+  /**
+   * Returns a {@link CacheStatistics} describing the cache of {@link
+   * Selector}s that {@linkplain #beans(Selector) select} no {@link
+   * Bean}s at all, at the moment of invocation.
+   *
+   * <p>Such {@link Selector}s, typically those of probes for optional
+   * dependencies, are cached apart from the others so that they
+   * neither compete with nor evict them.  The outcome of resolving
+   * one, whether {@code null} or a {@link ResolutionException}, is
+   * cached with it and reproduced without consulting the {@link
+   * Resolver} again.  Statistics are cumulative and are not reset by
+   * the {@link #clear()} method.</p>
+   *
+   * @return a {@link CacheStatistics}
+   *
+   * @nullability This method never returns {@code null}.
+   *
+   * @idempotency This method is idempotent but not deterministic.
+   *
+   * @threadsafety This method is safe for concurrent use by multiple
+   * threads.
+   *
+   * @see #cacheStatistics()
+   */
+  public final CacheStatistics unsatisfiedCacheStatistics() {
+    return this.unsatisfied.statistics();
   }
 
   /**
@@ -149,6 +534,18 @@ public final class Beans implements AutoCloseable {
    * and {@linkplain Resolver#resolve(Selector, Stream) resolved by}
    * this {@link Beans}'s {@link Resolver}.
    *
+   * <p>The outcome of resolution for a given non-{@code null} {@link
+   * Selector}, whether a {@link Bean}, {@code null}, or a thrown
+   * {@link ResolutionException}, is cached alongside the {@link Bean}s
+   * it selects, so the {@link Resolver} is consulted at most once per
+   * cached {@link Selector}.  When that outcome is a failure, only the
+   * {@link Resolver}'s failure handler is invoked again, so that every
+   * caller receives its own {@link ResolutionException}; a {@link
+   * Resolver} {@linkplain Resolver#Resolver(BiFunction) constructed}
+   * with {@link Resolver#failWithoutStackTrace(Selector, Collection)}
+   * as its failure handler makes each one cheap by not capturing a
+   * stack trace.</p>
+   *
    * @param selector a {@link Selector}; may be {@code null}
    *
    * @return the sole {@link Bean} both {@linkplain
@@ -178,10 +575,270 @@ public final class Beans implements AutoCloseable {
    *
    * @see Resolver#Resolver(BiFunction)
    *
-   * @see Resolver#resolve(Selector, Stream)
+   * @see Resolver#resolve(Selector, List)
    */
   public final Bean<?> bean(final Selector selector) {
-    return this.resolver.resolve(selector, this.beans(selector));
+    return selector == null ? this.resolver.resolve(null, this.snapshot.beans) : this.selection(selector).bean();
+  }
+
+  /**
+   * Returns the {@link Bean} that the {@link #bean(Selector)} method
+   * would return if it were supplied with the result of invoking
+   * {@link Selector#ofDefault(java.lang.reflect.Type)} with the
+   * supplied {@link Class}.
+   *
+   * <p>The outcome of resolution, whether a {@link Bean}, {@code
+   * null}, or a {@link ResolutionException}, is associated with the
+   * supplied {@link Class} itself by way of a {@link ClassValue}, so
+   * repeated lookups of the same {@link Class} involve no {@link
+   * Selector} construction and no hashing.  The association refers to
+   * this {@link Beans} and to the outcome only weakly, so it never
+   * keeps either reachable.  It is discarded when this {@link Beans}
+   * {@linkplain #add(Collection) changes} in a way that affects it,
+   * or when it is {@linkplain #clear() cleared} or {@linkplain
+   * #seal(Collection) sealed}.</p>
+   *
+   * @param c the {@link Class} whose default {@link Bean} should be
+   * returned; must not be {@code null}
+   *
+   * @return the resolved {@link Bean}; depending on the {@link
+   * Resolver} in question may be {@code null}
+   *
+   * @exception NullPointerException if {@code c} is {@code null}
+   *
+   * @exception AmbiguousResolutionException if the {@link Resolver}
+   * supplied {@linkplain #Beans(Collection, Resolver) at construction
+   * time} throws an {@link AmbiguousResolutionException}
+   *
+   * @exception UnsatisfiedResolutionException if the {@link Resolver}
+   * supplied {@linkplain #Beans(Collection, Resolver) at construction
+   * time} throws an {@link UnsatisfiedResolutionException}
+   *
+   * @nullability This method may return {@code null} depending on the
+   * {@link Resolver} {@linkplain #Beans(List, Resolver) supplied at
+   * construction time}.
+   *
+   * @idempotency This method is as deterministic and idempotent as the
+   * {@link #bean(Selector)} method.
+   *
+   * @threadsafety This method is safe for concurrent use by multiple
+   * threads.
+   *
+   * @see #bean(Selector)
+   *
+   * @see Selector#ofDefault(java.lang.reflect.Type)
+   */
+  public final Bean<?> defaultBean(final Class<?> c) {
+    final Object key = this.defaultSelectionsKey; // volatile read
+    final DefaultSelections defaultSelections = DEFAULT_SELECTIONS.get(c);
+    Selection selection = defaultSelections.get(key);
+    if (selection == null || selection.epoch < this.snapshot.epoch) { // volatile reads
+      // Either there is none, or it was not carried forward by the
+      // last change; (re)compute it.
+      selection = this.selection(Selector.ofDefault(c));
+      defaultSelections.put(key, selection);
+    }
+    return selection.bean();
+  }
+
+  /**
+   * Returns the {@linkplain Singleton#singleton() singleton} of the
+   * {@linkplain Bean#factory() <code>Factory</code>} of the {@link
+   * Bean} that the {@link #bean(Selector)} method would return for
+   * the supplied {@link Selector}, or {@code null} if there is no
+   * such {@link Bean} or if its {@link Factory} does not (yet) have
+   * a singleton.
+   *
+   * <p>A non-{@code null} singleton is cached alongside the resolved
+   * {@link Bean}, as permitted by the {@link Singleton#singleton()}
+   * contract, so subsequent invocations with the same (or an equal)
+   * {@link Selector} return it directly.  It is discarded with the
+   * resolved {@link Bean} if a later {@linkplain #add(Collection)
+   * change} to this {@link Beans} affects the supplied {@link
+   * Selector}.</p>
+   *
+   * @param <I> the type of the singleton
+   *
+   * @param selector a {@link Selector}; may be {@code null}
+   *
+   * @return the singleton, or {@code null}
+   *
+   * @exception ClassCastException if the singleton is not an
+   * instance of the type the caller expects
+   *
+   * @exception AmbiguousResolutionException if the {@link
+   * #bean(Selector)} method throws an {@link
+   * AmbiguousResolutionException}
+   *
+   * @exception UnsatisfiedResolutionException if the {@link
+   * #bean(Selector)} method throws an {@link
+   * UnsatisfiedResolutionException}
+   *
+   * @nullability This method may return {@code null}.
+   *
+   * @idempotency This method is as deterministic and idempotent as the
+   * {@link #bean(Selector)} method, and once it returns a non-{@code
+   * null} value for a given {@link Selector} it returns that value
+   * until this {@link Beans} changes in a way that affects that
+   * {@link Selector}.
+   *
+   * @threadsafety This method is safe for concurrent use by multiple
+   * threads.
+   *
+   * @see #bean(Selector)
+   *
+   * @see Singleton#singleton()
+   */
+  @SuppressWarnings("unchecked")
+  public final <I> I singleton(final Selector selector) {
+    if (selector == null) {
+      final Bean<?> bean = this.bean(null);
+      return bean == null ? null : (I)bean.factory().singleton();
+    }
+    return (I)this.selection(selector).singleton();
+  }
+
+  /**
+   * Calls the {@link #resolve(Collection, boolean)} method with the
+   * supplied {@link Selector}s and {@code false} and returns its
+   * result.
+   *
+   * @param selectors the {@link Selector}s to resolve; may be {@code
+   * null}
+   *
+   * @return an unmodifiable {@link List} of {@link Resolution}s, one
+   * per supplied {@link Selector}, in the same order
+   *
+   * @nullability This method never returns {@code null}.
+   *
+   * @idempotency This method is as deterministic and idempotent as the
+   * {@link #bean(Selector)} method.
+   *
+   * @threadsafety This method is safe for concurrent use by multiple
+   * threads.
+   *
+   * @see #resolve(Collection, boolean)
+   */
+  public final List<Resolution> resolve(final Selector... selectors) {
+    return selectors == null ? List.of() : this.resolve(Arrays.asList(selectors), false);
+  }
+
+  /**
+   * Calls the {@link #resolve(Collection, boolean)} method with the
+   * supplied {@link Collection} and {@code false} and returns its
+   * result.
+   *
+   * @param selectors the {@link Selector}s to resolve; may be {@code
+   * null}
+   *
+   * @return an unmodifiable {@link List} of {@link Resolution}s, one
+   * per supplied {@link Selector}, in iteration order
+   *
+   * @nullability This method never returns {@code null}.
+   *
+   * @idempotency This method is as deterministic and idempotent as the
+   * {@link #bean(Selector)} method.
+   *
+   * @threadsafety This method is safe for concurrent use by multiple
+   * threads.
+   *
+   * @see #resolve(Collection, boolean)
+   */
+  public final List<Resolution> resolve(final Collection<? extends Selector> selectors) {
+    return this.resolve(selectors, false);
+  }
+
+  /**
+   * Resolves each of the supplied {@link Selector}s as if by the
+   * {@link #bean(Selector)} method in one pass, returning a {@link
+   * Resolution} for each, in iteration order, that holds either the
+   * resolved {@link Bean} or the {@link ResolutionException} that
+   * resolving it produced.
+   *
+   * <p>Duplicate {@link Selector}s are resolved once.  {@link
+   * Selector}s that are neither sealed nor cached are grouped by their
+   * qualifiers so that the qualifier index is consulted once per
+   * group rather than once per {@link Selector}.  If {@code parallel}
+   * is {@code true} and enough of those {@link Selector}s are neither
+   * sealed nor cached, groups are processed in the {@linkplain
+   * java.util.concurrent.ForkJoinPool#commonPool() common fork-join
+   * pool}.</p>
+   *
+   * @param selectors the {@link Selector}s to resolve; may be {@code
+   * null}; a {@code null} element is resolved as by {@link
+   * #bean(Selector) bean(null)}
+   *
+   * @param parallel whether large batches may be split across the
+   * common fork-join pool
+   *
+   * @return an unmodifiable {@link List} of {@link Resolution}s, one
+   * per supplied {@link Selector}, in iteration order
+   *
+   * @nullability This method never returns {@code null}.
+   *
+   * @idempotency This method is as deterministic and idempotent as the
+   * {@link #bean(Selector)} method.
+   *
+   * @threadsafety This method is safe for concurrent use by multiple
+   * threads.
+   *
+   * @see #bean(Selector)
+   *
+   * @see Resolution
+   */
+  public final List<Resolution> resolve(final Collection<? extends Selector> selectors, final boolean parallel) {
+    if (selectors == null || selectors.isEmpty()) {
+      return List.of();
+    }
+    final Snapshot snapshot = this.snapshot; // volatile read
+
+    // Find the distinct Selectors and resolve those that are sealed or
+    // cached; group the rest by their qualifiers.  Each distinct
+    // Selector is resolved exactly once, so a failed resolution throws
+    // exactly one exception.
+    final Map<Selector, Resolution> resolved = new HashMap<>();
+    final Map<Qualifiers<?>, List<Selector>> misses = new HashMap<>();
+    int missCount = 0;
+    for (final Selector s : selectors) {
+      if (s != null && !resolved.containsKey(s)) {
+        final Selection selection = this.existingSelection(snapshot, s);
+        if (selection == null) {
+          resolved.put(s, null); // computed below
+          misses.computeIfAbsent(s.qualifiedType().qualifiers(), q -> new ArrayList<>()).add(s);
+          ++missCount;
+        } else {
+          resolved.put(s, selection.resolution());
+        }
+      }
+    }
+
+    if (missCount > 0) {
+      final ConcurrentMap<Selector, Resolution> computed = new ConcurrentHashMap<>();
+      final Stream<List<Selector>> groups =
+        parallel && missCount >= PARALLEL_BATCH_THRESHOLD ? misses.values().parallelStream() : misses.values().stream();
+      groups.forEach(group -> {
+          final Selector first = group.get(0);
+          // With a maskable compact registry, qualifiers are tested by
+          // mask and the qualifier index is not needed.
+          final BitSet qualified =
+            TypeIndex.any(first) || snapshot.registry.maskable() ?
+            null :
+            snapshot.qualifierIndex.qualified(first.qualifiedType().qualifiers());
+          for (final Selector s : group) {
+            final Selection selection =
+              this.cache(new Selection(s, snapshot, this.computeCachedBeans(snapshot, s, qualified), this.resolver));
+            // Resolve eagerly, while parallel.
+            computed.put(s, selection.resolution());
+          }
+        });
+      resolved.putAll(computed);
+    }
+
+    final List<Resolution> resolutions = new ArrayList<>(selectors.size());
+    for (final Selector s : selectors) {
+      resolutions.add(s == null ? this.resolution(null) : resolved.get(s));
+    }
+    return Collections.unmodifiableList(resolutions);
   }
 
   /**
@@ -203,7 +860,8 @@ public final class Beans implements AutoCloseable {
    * Clears internal caches.
    *
    * <p>This {@link Beans} remains functional after this method is
-   * called.</p>
+   * called.  {@link Selector}s {@linkplain #seal(Collection) sealed}
+   * previously remain sealed.</p>
    *
    * @idempotency This method is deterministic.
    *
@@ -212,14 +870,102 @@ public final class Beans implements AutoCloseable {
    */
   public final void clear() {
     this.cache.clear();
+    this.unsatisfied.clear();
+    this.front.clear();
+    this.defaultSelectionsKey = new Object(); // volatile write
+  }
+
+  /**
+   * Calls the {@link #seal(Collection)} method with an empty {@link
+   * Collection}, thus sealing only those {@link Selector}s observed
+   * so far.
+   *
+   * @idempotency This method is idempotent but not deterministic.
+   *
+   * @threadsafety This method is safe for concurrent use by multiple
+   * threads.
+   *
+   * @see #seal(Collection)
+   */
+  public final void seal() {
+    this.seal(List.of());
+  }
+
+  /**
+   * Resolves the supplied {@link Selector}s, together with every
+   * {@link Selector} currently cached or sealed, in parallel, and
+   * freezes their selected {@link Bean}s and resolution outcomes into
+   * an immutable lookup table consulted ahead of any cache by the
+   * {@link #beans(Selector)} and {@link #bean(Selector)} methods.
+   *
+   * <p>The lookup table is backed by a minimal perfect hash function,
+   * so sealed lookups involve no locks and no {@link
+   * java.util.concurrent.ConcurrentHashMap}.  Once the table is
+   * built, the ordinary cache is {@linkplain #clear() cleared}, since
+   * its contents are then redundant.  {@link Selector}s that were not
+   * sealed continue to be served (and cached) as usual.</p>
+   *
+   * <p>Resolution happens in the {@linkplain
+   * java.util.concurrent.ForkJoinPool#commonPool() common fork-join
+   * pool}.  A failed resolution does not cause this method to throw;
+   * its outcome is cached as usual and a {@link ResolutionException}
+   * is thrown by the {@link #bean(Selector)} method.</p>
+   *
+   * <p>This method is intended to be called once the set of {@link
+   * Selector}s an application uses has settled, typically at the end
+   * of startup, and may be called again to extend the sealed set.</p>
+   *
+   * <p>Once sealed, a {@link Beans} no longer permits {@link Bean}s
+   * to be {@linkplain #add(Collection) added} or {@linkplain
+   * #remove(Collection) removed}.</p>
+   *
+   * @param selectors additional {@link Selector}s to seal; may be
+   * {@code null}; {@code null} elements are ignored
+   *
+   * @idempotency This method is idempotent but not deterministic.
+   *
+   * @threadsafety This method is safe for concurrent use by multiple
+   * threads.
+   *
+   * @see #bean(Selector)
+   */
+  public final void seal(final Collection<? extends Selector> selectors) {
+    this.lock.lock();
+    try {
+      final Set<Selector> all = new HashSet<>(this.cache.keys());
+      all.addAll(this.unsatisfied.keys());
+      final PerfectHashMap<Selector, Selection> sealed = this.sealed; // volatile read
+      if (sealed != null) {
+        all.addAll(sealed.keys());
+      }
+      if (selectors != null) {
+        for (final Selector s : selectors) {
+          if (s != null) {
+            all.add(s);
+          }
+        }
+      }
+      final Map<Selector, Selection> selections =
+        all.parallelStream().collect(Collectors.toConcurrentMap(Function.identity(), this::resolvedSelection));
+      this.sealed = new PerfectHashMap<>(selections); // volatile write
+      this.cache.clear();
+      this.unsatisfied.clear();
+      this.front.clear();
+      this.defaultSelectionsKey = new Object(); // volatile write
+    } finally {
+      this.lock.unlock();
+    }
   }
 
   /**
    * Returns a {@link Predicate} representing the filtering behavior
    * modeled by the supplied {@link Selector}.
    *
-   * <p>The default implementation of this method returns a method
-   * reference to the {@link Selector#selects(Bean)} method.</p>
+   * <p>The default implementation of this method returns a {@link
+   * Predicate} compiled from the supplied {@link Selector} that
+   * behaves exactly as its {@link Selector#selects(Bean)} method
+   * does, but with its qualifier, type and interceptor binding
+   * decisions made once, up front.</p>
    *
    * @param s the {@link Selector} to represent; must not be {@code
    * null}
@@ -240,11 +986,449 @@ public final class Beans implements AutoCloseable {
    * @see Selector#selects(Bean)
    */
   protected Predicate<? super Bean<?>> predicate(final Selector s) {
-    return s::selects;
+    return Matcher.of(s);
   }
 
-  private final List<Bean<?>> computeCachedBeans(final Selector s) {
-    return this.beans().filter(this.predicate(s)).toList();
+
+  private final Selection selection(final Selector selector) {
+    final Snapshot snapshot = this.snapshot; // volatile read
+    // Callers that present the same (e.g. interned) Selector instance
+    // repeatedly are served by identity, with no hashing or deep
+    // equality checks at all.
+    Selection selection = this.front.get(selector);
+    if (selection != null && selection.epoch >= snapshot.epoch) {
+      return selection;
+    }
+    final PerfectHashMap<Selector, Selection> sealed = this.sealed; // volatile read
+    if (sealed != null) {
+      selection = sealed.get(selector);
+      if (selection != null) {
+        this.front.put(selector, selection);
+        return selection;
+      }
+    }
+    selection = this.cachedSelection(snapshot, selector);
+    if (selection == null) {
+      selection = this.cache(this.computeSelection(selector));
+    }
+    this.front.put(selector, selection);
+    return selection;
+  }
+
+  // Returns the cached Selection for the supplied Selector if it is
+  // current with respect to the supplied Snapshot, or null.
+  // Neither cache records a miss here; cache(Selection) records it
+  // against whichever cache the Selection then belongs in, so that
+  // lookups of absent Beans do not skew the statistics and admission
+  // sketch of cache, nor the reverse.
+  private final Selection cachedSelection(final Snapshot snapshot, final Selector selector) {
+    Selection selection = this.cache.getIfPresent(selector);
+    if (selection == null) {
+      selection = this.unsatisfied.getIfPresent(selector);
+      if (selection == null) {
+        return null;
+      } else if (selection.epoch < snapshot.epoch) {
+        // The Selection was computed against a snapshot that has
+        // since been replaced, and it was not carried forward.
+        this.unsatisfied.remove(selector, selection);
+        return null;
+      }
+    } else if (selection.epoch < snapshot.epoch) {
+      this.cache.remove(selector, selection);
+      return null;
+    }
+    return selection;
+  }
+
+  // Caches the supplied Selection unless one is already cached for its
+  // Selector, and returns whichever is cached.
+  private final Selection cache(final Selection selection) {
+    final BoundedCache<Selector, Selection> cache = selection.beans().isEmpty() ? this.unsatisfied : this.cache;
+    cache.recordMiss(selection.selector);
+    return cache.putIfAbsent(selection.selector, selection);
+  }
+
+  // Returns the sealed or cached Selection for the supplied Selector
+  // if it is current with respect to the supplied Snapshot, or null.
+  private final Selection existingSelection(final Snapshot snapshot, final Selector selector) {
+    final PerfectHashMap<Selector, Selection> sealed = this.sealed; // volatile read
+    if (sealed != null) {
+      final Selection selection = sealed.get(selector);
+      if (selection != null) {
+        return selection;
+      }
+    }
+    return this.cachedSelection(snapshot, selector);
+  }
+
+  private final Resolution resolution(final Selector selector) {
+    try {
+      return new Resolution(selector, this.bean(selector), null);
+    } catch (final ResolutionException e) {
+      return new Resolution(selector, null, e);
+    }
+  }
+
+  // Must be called while holding this.lock.
+  private final Snapshot checkUnsealed() {
+    if (this.sealed != null) { // volatile read
+      throw new IllegalStateException("sealed");
+    }
+    return this.snapshot; // volatile read
+  }
+
+  // Must be called while holding this.lock.
+  private final long publish(final Snapshot old, final List<Bean<?>> beans, final Collection<? extends Bean<?>> changed) {
+    final Snapshot snapshot = new Snapshot(old.epoch + 1L, beans, old);
+    this.snapshot = snapshot; // volatile write
+    // Carry forward every current Selection that selects none of the
+    // changed Beans; discard the rest.  A reader racing with this may
+    // briefly see a Selection from the old epoch and recompute it.
+    this.carryForward(this.cache, old, snapshot, changed);
+    this.carryForward(this.unsatisfied, old, snapshot, changed);
+    // The front may hold discarded Selections, and with them removed
+    // Beans, for Selectors that are never requested again.  Selections
+    // carried forward are found again in the caches.
+    this.front.clear();
+    return snapshot.epoch;
+  }
+
+  // Must be called while holding this.lock.
+  private final void carryForward(final BoundedCache<Selector, Selection> cache,
+                                  final Snapshot old,
+                                  final Snapshot snapshot,
+                                  final Collection<? extends Bean<?>> changed) {
+    cache.forEach((selector, selection) -> {
+        if (selection.epoch == old.epoch && !this.selectsAny(selector, changed)) {
+          selection.epoch = snapshot.epoch; // volatile write
+        } else {
+          cache.remove(selector, selection);
+        }
+      });
+  }
+
+  private final boolean selectsAny(final Selector selector, final Collection<? extends Bean<?>> beans) {
+    final Predicate<? super Bean<?>> p = this.predicate(selector);
+    for (final Bean<?> bean : beans) {
+      if (p.test(bean)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private final Selection resolvedSelection(final Selector selector) {
+    final Selection selection = this.selection(selector);
+    try {
+      selection.bean();
+    } catch (final ResolutionException e) {
+      // The outcome is cached in the Selection and will be rethrown
+      // by bean(Selector).
+    }
+    return selection;
+  }
+
+  private final Selection computeSelection(final Selector s) {
+    final Snapshot snapshot = this.snapshot; // volatile read
+    return new Selection(s, snapshot, this.computeCachedBeans(snapshot, s, null), this.resolver);
+  }
+
+  // Returns the ascending positions in snapshot.beans of the Beans
+  // that s selects.  qualified, if non-null, must be what
+  // snapshot.qualifierIndex would return for s's qualifiers; it is not
+  // modified.
+  private final int[] computeCachedBeans(final Snapshot snapshot, final Selector s, BitSet qualified) {
+    // Only the candidates the type index yields need to be tested.
+    // Unless the Selector is ANY-qualified (in which case the type
+    // index has already applied its qualifier constraint), they are
+    // first narrowed to those that are qualified, using the compact
+    // registry's qualifier masks or, failing that, the qualifier
+    // index, walking whichever of the two is smaller.  When the type
+    // index can vouch for its candidates (see TypeIndex#exact(Selector)),
+    // only those it could not index exactly are tested.
+    //
+    // Once qualifiers are accounted for, a Matcher (the default
+    // predicate) need only test types and interceptor bindings, which
+    // it reads from the compact registry rather than from each Bean.
+    final int[] candidates = snapshot.typeIndex.candidates(s);
+    if (candidates.length == 0) {
+      return EMPTY_POSITIONS;
+    }
+    final Predicate<? super Bean<?>> p = this.predicate(s);
+    final Matcher m = p instanceof Matcher matcher ? matcher : null;
+    final CompactRegistry r = snapshot.registry;
+    final int[] positions;
+    int size = 0;
+    if (TypeIndex.any(s)) {
+      final boolean exact = snapshot.typeIndex.exact(s);
+      positions = new int[candidates.length];
+      for (final int i : candidates) {
+        if (exact && snapshot.typeIndex.indexed(i) ||
+            (m == null ? p.test(snapshot.beans.get(i)) : m.matches(r.type(i), r.interceptorBindings(i)))) {
+          positions[size++] = i;
+        }
+      }
+    } else if (qualified == null && r.maskable()) {
+      final long mask = r.mask(s.qualifiedType().qualifiers());
+      positions = new int[candidates.length];
+      for (final int i : candidates) {
+        if (r.qualified(i, mask) &&
+            (m == null ? p.test(snapshot.beans.get(i)) : m.matches(r.type(i), r.interceptorBindings(i)))) {
+          positions[size++] = i;
+        }
+      }
+    } else {
+      if (qualified == null) {
+        qualified = snapshot.qualifierIndex.qualified(s.qualifiedType().qualifiers());
+      }
+      final int cardinality = qualified.cardinality();
+      positions = new int[Math.min(cardinality, candidates.length)];
+      if (cardinality < candidates.length) {
+        for (int i = qualified.nextSetBit(0); i >= 0; i = qualified.nextSetBit(i + 1)) {
+          if (Arrays.binarySearch(candidates, i) >= 0 &&
+              (m == null ? p.test(snapshot.beans.get(i)) : m.matches(r.type(i), r.interceptorBindings(i)))) {
+            positions[size++] = i;
+          }
+        }
+      } else {
+        for (final int i : candidates) {
+          if (qualified.get(i) &&
+              (m == null ? p.test(snapshot.beans.get(i)) : m.matches(r.type(i), r.interceptorBindings(i)))) {
+            positions[size++] = i;
+          }
+        }
+      }
+    }
+    return size == 0 ? EMPTY_POSITIONS : size == positions.length ? positions : Arrays.copyOf(positions, size);
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  // The Selections of the Selector.ofDefault(Class) Selector for one
+  // Class, one per Beans, copied on write.  Entries refer weakly both
+  // to their Beans' defaultSelectionsKey and to their Selection, which
+  // the Beans' own caches normally keep reachable; a Selection that
+  // has been collected is simply recomputed.
+  private static final class DefaultSelections {
+
+    private static final Entry[] EMPTY = new Entry[0];
+
+    private volatile Entry[] entries;
+
+    private DefaultSelections() {
+      super();
+      this.entries = EMPTY;
+    }
+
+    private final Selection get(final Object key) {
+      for (final Entry entry : this.entries) { // volatile read
+        if (entry.get() == key) {
+          return entry.selection.get();
+        }
+      }
+      return null;
+    }
+
+    // A racing put may be lost, in which case its Selection is merely
+    // looked up again later.
+    private final void put(final Object key, final Selection selection) {
+      final Entry[] entries = this.entries; // volatile read
+      final List<Entry> live = new ArrayList<>(entries.length + 1);
+      for (final Entry entry : entries) {
+        final Object k = entry.get();
+        if (k != null && k != key && entry.selection.get() != null) {
+          live.add(entry);
+        }
+      }
+      live.add(new Entry(key, selection));
+      this.entries = live.toArray(EMPTY); // volatile write
+    }
+
+    private static final class Entry extends WeakReference<Object> {
+
+      private final WeakReference<Selection> selection;
+
+      private Entry(final Object key, final Selection selection) {
+        super(key);
+        this.selection = new WeakReference<>(selection);
+      }
+
+    }
+
+  }
+
+  // The cached state for a Selector: the Beans it selects, a plan for
+  // resolving them, and, lazily, the outcome of resolving them.
+  private static final class Selection {
+
+    // Denotes a resolution outcome of null.
+    private static final Object NULL = new Object();
+
+    // Denotes a resolution outcome of a thrown ResolutionException.
+    private static final Object FAILED = new Object();
+
+    private final Selector selector;
+
+    private final List<Bean<?>> beans;
+
+    private final ResolutionPlan<Bean<?>> plan;
+
+    // The epoch of the latest Snapshot for which beans is known to be
+    // correct; advanced by Beans#publish(Snapshot, List, Collection).
+    private volatile long epoch;
+
+    // null (not yet resolved), NULL, FAILED, or a Bean
+    private volatile Object resolution;
+
+    // The non-null singleton of the resolved Bean's Factory, or null.
+    private volatile Object singleton;
+
+    private Selection(final Selector selector, final Snapshot snapshot, final int[] positions, final Resolver resolver) {
+      super();
+      this.selector = selector;
+      this.epoch = snapshot.epoch;
+      if (positions.length == 0) {
+        this.beans = List.of();
+      } else {
+        final Bean<?>[] beans = new Bean<?>[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+          beans[i] = snapshot.beans.get(positions[i]);
+        }
+        this.beans = Collections.unmodifiableList(Arrays.asList(beans));
+      }
+      this.plan = resolver.plan(this.beans, snapshot.registry, positions);
+    }
+
+    private final List<Bean<?>> beans() {
+      return this.beans;
+    }
+
+    private final Bean<?> bean() {
+      final Object resolution = this.resolution; // volatile read
+      if (resolution == null) {
+        // Racing threads may each resolve; the outcome is the same.
+        final Bean<?> bean;
+        try {
+          bean = this.plan.resolve(this.selector);
+        } catch (final ResolutionException e) {
+          this.resolution = FAILED; // volatile write
+          throw e;
+        }
+        this.resolution = bean == null ? NULL : bean; // volatile write
+        return bean;
+      } else if (resolution == FAILED) {
+        // The plan has already found the ambiguous Beans, if any, so
+        // this only invokes the failure handler, which throws a new
+        // ResolutionException to this caller alone.
+        return this.plan.resolve(this.selector);
+      }
+      return resolution == NULL ? null : (Bean<?>)resolution;
+    }
+
+    private final Object singleton() {
+      Object singleton = this.singleton; // volatile read
+      if (singleton == null) {
+        final Bean<?> bean = this.bean();
+        if (bean != null) {
+          singleton = bean.factory().singleton();
+          if (singleton != null) {
+            // Per the Singleton contract this never changes, so racing
+            // threads all write the same value.
+            this.singleton = singleton; // volatile write
+          }
+        }
+      }
+      return singleton;
+    }
+
+    private final Resolution resolution() {
+      try {
+        return new Resolution(this.selector, this.bean(), null);
+      } catch (final ResolutionException e) {
+        return new Resolution(this.selector, null, e);
+      }
+    }
+
+  }
+
+  // An immutable, epoch-versioned view of the Beans contained by a
+  // Beans, together with the indexes and compact registry over them.
+  private static final class Snapshot {
+
+    private final long epoch;
+
+    private final List<Bean<?>> beans;
+
+    private final TypeIndex typeIndex;
+
+    // null if registry is maskable, in which case qualifiers are
+    // tested by mask and the index would never be consulted.
+    private final QualifierIndex qualifierIndex;
+
+    private final CompactRegistry registry;
+
+    // Indexed by ordinal; null where a Bean has been removed.
+    private final Bean<?>[] beansByOrdinal;
+
+    // Keyed by identity: contained Beans are canonical, so looking up
+    // the ordinal of a Bean obtained from the Beans involves no deep
+    // hashing.
+    private final IdentityHashMap<Bean<?>, Integer> ordinals;
+
+    // Keyed by equality, for Beans equal to, but not the same as, a
+    // contained Bean; built only when first needed.
+    private volatile Map<Bean<?>, Integer> equalOrdinals;
+
+    // Ordinals are carried over from the previous Snapshot, if any, so
+    // that they are stable for as long as a Bean is contained; new
+    // Beans receive ordinals never used before.
+    private Snapshot(final long epoch, final List<Bean<?>> beans, final Snapshot previous) {
+      super();
+      this.epoch = epoch;
+      this.beans = beans;
+      this.typeIndex = new TypeIndex(beans);
+      this.registry = new CompactRegistry(beans);
+      this.qualifierIndex = this.registry.maskable() ? null : new QualifierIndex(beans);
+      final int size = beans.size();
+      final int[] ordinals = new int[size];
+      final BitSet used = new BitSet();
+      int next = previous == null ? 0 : previous.beansByOrdinal.length;
+      for (int i = 0; i < size; i++) {
+        // Carried-over Beans are the very same instances.
+        final Integer ordinal = previous == null ? null : previous.ordinals.get(beans.get(i));
+        ordinals[i] = ordinal == null || used.get(ordinal) ? next++ : ordinal;
+        used.set(ordinals[i]);
+      }
+      this.beansByOrdinal = new Bean<?>[next];
+      this.ordinals = new IdentityHashMap<>(size);
+      for (int i = 0; i < size; i++) {
+        final Bean<?> bean = beans.get(i);
+        this.beansByOrdinal[ordinals[i]] = bean;
+        this.ordinals.putIfAbsent(bean, ordinals[i]);
+      }
+    }
+
+    private final int ordinal(final Bean<?> bean) {
+      Integer ordinal = this.ordinals.get(bean);
+      if (ordinal == null) {
+        Map<Bean<?>, Integer> equalOrdinals = this.equalOrdinals; // volatile read
+        if (equalOrdinals == null) {
+          // Racing threads may each build an equal map.
+          equalOrdinals = new HashMap<>(this.beans.size() * 4 / 3 + 1);
+          for (final Bean<?> b : this.beans) {
+            equalOrdinals.putIfAbsent(b, this.ordinals.get(b));
+          }
+          this.equalOrdinals = equalOrdinals; // volatile write
+        }
+        ordinal = equalOrdinals.get(bean);
+      }
+      return ordinal == null ? -1 : ordinal.intValue();
+    }
+
   }
 
 }
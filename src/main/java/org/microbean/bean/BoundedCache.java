@@ -0,0 +1,479 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2022 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.bean;
+
+import java.util.ArrayDeque;
+import java.util.Objects;
+import java.util.Set;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * A concurrent cache of values computed from keys that holds at most
+ * a fixed number of entries.
+ *
+ * <p>Reads are lock-free.  When the cache is full, a candidate entry
+ * is admitted only if a TinyLFU-style frequency sketch estimates that
+ * its key has been requested more often than that of the victim
+ * chosen by a CLOCK (second chance) sweep; otherwise the candidate
+ * value is returned to the caller but not retained.</p>
+ *
+ * @param <K> the type of keys
+ *
+ * @param <V> the type of values
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see CacheStatistics
+ */
+final class BoundedCache<K, V> {
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  private final int maximumSize;
+
+  private final ConcurrentMap<K, Node<K, V>> map;
+
+  private final ReentrantLock lock;
+
+  // Guarded by lock.
+  private final ArrayDeque<Node<K, V>> clock;
+
+  // The number of removed nodes still in the clock.  Guarded by lock.
+  private int removed;
+
+  private final FrequencySketch sketch;
+
+  private final LongAdder hits;
+
+  private final LongAdder misses;
+
+  private final LongAdder evictions;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link BoundedCache}.
+   *
+   * @param maximumSize the maximum number of entries the cache will
+   * hold; if less than or equal to {@code 0} the cache will be
+   * unbounded
+   */
+  BoundedCache(final int maximumSize) {
+    super();
+    this.maximumSize = maximumSize <= 0 ? Integer.MAX_VALUE : maximumSize;
+    this.map = new ConcurrentHashMap<>();
+    this.lock = new ReentrantLock();
+    this.clock = new ArrayDeque<>();
+    this.sketch = this.maximumSize == Integer.MAX_VALUE ? null : new FrequencySketch(this.maximumSize);
+    this.hits = new LongAdder();
+    this.misses = new LongAdder();
+    this.evictions = new LongAdder();
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns the value cached under the supplied key, computing it
+   * with the supplied {@link Function} and offering it for admission
+   * if it is not present.
+   *
+   * <p>The supplied {@link Function} is not invoked while any lock
+   * is held, and may be invoked more than once for the same key by
+   * racing threads; in that case all callers receive the first value
+   * admitted.</p>
+   *
+   * @param key the key; must not be {@code null}
+   *
+   * @param f the {@link Function} computing a value; must not be
+   * {@code null} and must not return {@code null}
+   *
+   * @return the cached or computed value; never {@code null}
+   *
+   * @exception NullPointerException if any argument is {@code null}
+   * or if {@code f} returns {@code null}
+   */
+  final V computeIfAbsent(final K key, final Function<? super K, ? extends V> f) {
+    final V value = this.get(key);
+    return value == null ? this.putIfAbsent(key, Objects.requireNonNull(f.apply(key), "f.apply(key)")) : value;
+  }
+
+  /**
+   * Returns the value cached under the supplied key, or {@code null}
+   * if there is none, recording a hit or a miss accordingly.
+   *
+   * @param key the key; must not be {@code null}
+   *
+   * @return the cached value, or {@code null}
+   *
+   * @exception NullPointerException if {@code key} is {@code null}
+   */
+  final V get(final K key) {
+    final V value = this.getIfPresent(key);
+    if (value == null) {
+      this.recordMiss(key);
+    }
+    return value;
+  }
+
+  /**
+   * Returns the value cached under the supplied key, recording a hit,
+   * or {@code null} if there is none, recording nothing.
+   *
+   * <p>This method is for callers that probe several caches in turn
+   * and want each miss counted, by way of the {@link
+   * #recordMiss(Object)} method, only against the cache that will
+   * come to hold the value.</p>
+   *
+   * @param key the key; must not be {@code null}
+   *
+   * @return the cached value, or {@code null}
+   *
+   * @exception NullPointerException if {@code key} is {@code null}
+   */
+  final V getIfPresent(final K key) {
+    final Node<K, V> node = this.map.get(key);
+    if (node == null) {
+      return null;
+    }
+    this.hits.increment();
+    if (!node.referenced) {
+      // Set the reference bit at most once per sweep so that hot
+      // reads do not repeatedly dirty shared memory.
+      node.referenced = true;
+      if (this.sketch != null) {
+        this.sketch.increment(key);
+      }
+    }
+    return node.value;
+  }
+
+  /**
+   * Records a miss for the supplied key, exactly as the {@link
+   * #get(Object)} method does when it finds no value.
+   *
+   * @param key the key; must not be {@code null}
+   *
+   * @exception NullPointerException if {@code key} is {@code null}
+   * and this {@link BoundedCache} is bounded
+   *
+   * @see #getIfPresent(Object)
+   */
+  final void recordMiss(final K key) {
+    this.misses.increment();
+    if (this.sketch != null) {
+      this.sketch.increment(key);
+    }
+  }
+
+  /**
+   * Offers the supplied value for admission under the supplied key,
+   * returning the value that is cached under the key afterwards or,
+   * if the value was not admitted, the supplied value.
+   *
+   * @param key the key; must not be {@code null}
+   *
+   * @param value the value; must not be {@code null}
+   *
+   * @return the value now cached under the supplied key, or the
+   * supplied value; never {@code null}
+   *
+   * @exception NullPointerException if either argument is {@code
+   * null}
+   */
+  final V putIfAbsent(final K key, final V value) {
+    final Node<K, V> candidate = new Node<>(key, Objects.requireNonNull(value, "value"));
+    if (this.sketch == null) {
+      final Node<K, V> existing = this.map.putIfAbsent(key, candidate);
+      return existing == null ? value : existing.value;
+    }
+    this.lock.lock();
+    try {
+      final Node<K, V> existing = this.map.get(key);
+      if (existing != null) {
+        return existing.value;
+      }
+      if (this.map.size() >= this.maximumSize) {
+        final Node<K, V> victim = this.victim();
+        if (victim == null || this.sketch.frequency(key) <= this.sketch.frequency(victim.key)) {
+          // Not admitted; the victim (if any) gets another chance.
+          if (victim != null) {
+            this.clock.addFirst(victim);
+          }
+          return value;
+        }
+        this.map.remove(victim.key, victim);
+        this.evictions.increment();
+      }
+      this.map.put(key, candidate);
+      this.clock.addLast(candidate);
+    } finally {
+      this.lock.unlock();
+    }
+    return value;
+  }
+
+  // Must be called while holding this.lock.
+  private final Node<K, V> victim() {
+    Node<K, V> node;
+    while ((node = this.clock.pollFirst()) != null) {
+      if (node.removed) {
+        // Lazily drop nodes already removed from the map.
+        --this.removed;
+        continue;
+      } else if (node.referenced) {
+        node.referenced = false;
+        this.clock.addLast(node);
+      } else {
+        return node;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Removes the entry for the supplied key if and only if it is
+   * currently mapped to the supplied value (compared by identity).
+   *
+   * <p>Once removed nodes make up more than half of the CLOCK, they
+   * are dropped from it, so that removed values do not stay reachable
+   * until the cache next fills.</p>
+   *
+   * @param key the key; must not be {@code null}
+   *
+   * @param value the value; must not be {@code null}
+   *
+   * @return {@code true} if the entry was removed
+   *
+   * @exception NullPointerException if {@code key} is {@code null}
+   */
+  final boolean remove(final K key, final V value) {
+    this.lock.lock();
+    try {
+      final Node<K, V> node = this.map.get(key);
+      if (node != null && node.value == value && this.map.remove(key, node)) {
+        if (this.sketch != null) {
+          // Only a bounded cache's nodes are in the clock.
+          node.removed = true;
+          if (++this.removed > this.clock.size() >>> 1) {
+            this.clock.removeIf(n -> n.removed);
+            this.removed = 0;
+          }
+        }
+        return true;
+      }
+      return false;
+    } finally {
+      this.lock.unlock();
+    }
+  }
+
+  /**
+   * Invokes the supplied {@link BiConsumer} with each entry currently
+   * cached.
+   *
+   * <p>Iteration is weakly consistent; entries added or removed
+   * concurrently may or may not be visited.</p>
+   *
+   * @param action the {@link BiConsumer}; must not be {@code null}
+   *
+   * @exception NullPointerException if {@code action} is {@code
+   * null}
+   */
+  final void forEach(final BiConsumer<? super K, ? super V> action) {
+    this.map.forEach((k, node) -> action.accept(k, node.value));
+  }
+
+  /**
+   * Removes all entries from this {@link BoundedCache}.
+   *
+   * <p>{@linkplain #statistics() Statistics} are cumulative and are
+   * not reset.</p>
+   */
+  final void clear() {
+    this.lock.lock();
+    try {
+      this.map.clear();
+      this.clock.clear();
+      this.removed = 0;
+    } finally {
+      this.lock.unlock();
+    }
+  }
+
+  /**
+   * Returns an immutable snapshot of the keys currently cached.
+   *
+   * @return an immutable {@link Set} of keys; never {@code null}
+   */
+  final Set<K> keys() {
+    return Set.copyOf(this.map.keySet());
+  }
+
+  /**
+   * Returns the number of entries currently cached.
+   *
+   * @return the number of entries currently cached
+   */
+  final int size() {
+    return this.map.size();
+  }
+
+  /**
+   * Returns a {@link CacheStatistics} describing this {@link
+   * BoundedCache} at the moment of invocation.
+   *
+   * @return a {@link CacheStatistics}; never {@code null}
+   */
+  final CacheStatistics statistics() {
+    return new CacheStatistics(this.hits.sum(), this.misses.sum(), this.evictions.sum(), this.map.size());
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  private static final class Node<K, V> {
+
+    private final K key;
+
+    private final V value;
+
+    // Deliberately not volatile; a lost update merely costs an entry
+    // its second chance.
+    private boolean referenced;
+
+    // Guarded by the owning BoundedCache's lock.
+    private boolean removed;
+
+    private Node(final K key, final V value) {
+      super();
+      this.key = key;
+      this.value = value;
+    }
+
+  }
+
+  /**
+   * A count-min sketch of four-bit counters that estimates how often
+   * keys have been requested, halving all counters periodically so
+   * that the estimates favor recent history.
+   *
+   * <p>Updates are deliberately not atomic; the occasional lost
+   * increment is harmless to an estimate.</p>
+   */
+  private static final class FrequencySketch {
+
+    private static final long[] SEEDS = {
+      0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    private final long[] table;
+
+    private final int tableMask;
+
+    private final int sampleSize;
+
+    private int additions;
+
+    private FrequencySketch(final int maximumSize) {
+      super();
+      final int capacity = Math.max(8, Integer.highestOneBit(Math.min(maximumSize, 1 << 28) - 1) << 1);
+      this.table = new long[capacity];
+      this.tableMask = capacity - 1;
+      this.sampleSize = 10 * Math.min(maximumSize, Integer.MAX_VALUE / 10);
+    }
+
+    private final int frequency(final Object key) {
+      final int hash = spread(key.hashCode());
+      int frequency = Integer.MAX_VALUE;
+      for (int i = 0; i < 4; i++) {
+        frequency = Math.min(frequency, (int)((this.table[this.index(hash, i)] >>> this.offset(hash, i)) & 0xfL));
+      }
+      return frequency;
+    }
+
+    private final void increment(final Object key) {
+      final int hash = spread(key.hashCode());
+      boolean added = false;
+      for (int i = 0; i < 4; i++) {
+        final int index = this.index(hash, i);
+        final int offset = this.offset(hash, i);
+        final long mask = 0xfL << offset;
+        final long word = this.table[index];
+        if ((word & mask) != mask) {
+          this.table[index] = word + (1L << offset);
+          added = true;
+        }
+      }
+      if (added && ++this.additions >= this.sampleSize) {
+        this.reset();
+      }
+    }
+
+    private final void reset() {
+      for (int i = 0; i < this.table.length; i++) {
+        this.table[i] = (this.table[i] >>> 1) & RESET_MASK;
+      }
+      this.additions >>>= 1;
+    }
+
+    private final int index(final int hash, final int i) {
+      long h = (hash + SEEDS[i]) * SEEDS[i];
+      h += h >>> 32;
+      return (int)h & this.tableMask;
+    }
+
+    private final int offset(final int hash, final int i) {
+      // Each long holds sixteen four-bit counters; each hash function
+      // uses its own quarter of them.
+      return (((hash >>> (i << 3)) & 3) + (i << 2)) << 2;
+    }
+
+    private static final int spread(final int h) {
+      final int x = (h ^ (h >>> 17)) * 0xed5ad4bb;
+      return x ^ (x >>> 11);
+    }
+
+  }
+
+}
@@ -0,0 +1,56 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2022 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.bean;
+
+/**
+ * A snapshot of the cumulative statistics of a cache.
+ *
+ * @param hits the number of lookups that found a cached entry
+ *
+ * @param misses the number of lookups that did not find a cached
+ * entry
+ *
+ * @param evictions the number of entries removed to make room for
+ * others
+ *
+ * @param size the number of entries cached at the time the snapshot
+ * was taken
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see Beans#cacheStatistics()
+ */
+public final record CacheStatistics(long hits, long misses, long evictions, int size) {
+
+  /**
+   * Returns the ratio of {@linkplain #hits() hits} to all lookups, or
+   * {@code 1.0} if there have been no lookups.
+   *
+   * @return the ratio of {@linkplain #hits() hits} to all lookups
+   *
+   * @idempotency This method is idempotent and deterministic.
+   *
+   * @threadsafety This method is safe for concurrent use by multiple
+   * threads.
+   */
+  public final double hitRate() {
+    final long lookups = this.hits() + this.misses();
+    return lookups == 0L ? 1.0 : (double)this.hits() / lookups;
+  }
+
+}
@@ -0,0 +1,278 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2022 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.bean;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.microbean.interceptor.InterceptorBindings;
+
+import org.microbean.qualifier.Qualifiers;
+
+import org.microbean.type.Type;
+
+import static org.microbean.bean.Selector.ANY_QUALIFIER;
+import static org.microbean.bean.Selector.DEFAULT_QUALIFIER;
+
+/**
+ * An immutable, struct-of-arrays view of the matching and resolution
+ * metadata of a {@link List} of {@link Bean}s, indexed by position.
+ *
+ * <p>Rather than following {@link Bean} to {@link Id} to {@link
+ * Selector} to {@link org.microbean.qualifier.Qualified} for each
+ * {@link Bean} tested, scans read parallel arrays: {@linkplain
+ * #priority(int) priorities}, {@linkplain #alternate(int) alternate
+ * flags}, {@linkplain #qualified(int, long) qualifier
+ * masks}, {@linkplain #type(int) types} and {@linkplain #interceptorBindings(int) interceptor
+ * bindings}.</p>
+ *
+ * <p>Qualifier masks assign each distinct qualifier a bit, {@link
+ * Selector#ANY_QUALIFIER ANY} and {@link Selector#DEFAULT_QUALIFIER
+ * DEFAULT} always being among them.  If there are too many distinct
+ * qualifiers to fit, the registry is not {@linkplain #maskable()
+ * maskable} and callers must test qualifiers some other way.</p>
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see Beans
+ */
+final class CompactRegistry {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  private static final long ANY = 1L;
+
+  private static final long DEFAULT = 1L << 1;
+
+  // Set in a selector mask that contains a qualifier no Bean bears.
+  private static final long UNKNOWN = 1L << 63;
+
+  private static final int MAXIMUM_QUALIFIERS = 63;
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  private final int[] priorities;
+
+  private final BitSet alternates;
+
+  private final Type<?>[] types;
+
+  private final InterceptorBindings<?>[] interceptorBindings;
+
+  // null if not maskable.
+  private final long[] qualifierMasks;
+
+  private final Map<Object, Long> qualifierBits;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link CompactRegistry}.
+   *
+   * @param beans the {@link Bean}s; must not be {@code null} or
+   * contain {@code null} elements
+   *
+   * @exception NullPointerException if {@code beans} is {@code null}
+   * or contains {@code null} elements
+   */
+  CompactRegistry(final List<? extends Bean<?>> beans) {
+    super();
+    final int size = beans.size();
+    this.priorities = new int[size];
+    this.alternates = new BitSet(size);
+    this.types = new Type<?>[size];
+    this.interceptorBindings = new InterceptorBindings<?>[size];
+    final Map<Object, Long> qualifierBits = new HashMap<>();
+    qualifierBits.put(ANY_QUALIFIER, ANY);
+    qualifierBits.put(DEFAULT_QUALIFIER, DEFAULT);
+    long[] qualifierMasks = new long[size];
+    for (int i = 0; i < size; i++) {
+      final Bean<?> bean = beans.get(i);
+      final Selector selector = bean.id().selector();
+      this.priorities[i] = bean.priority();
+      if (bean.alternate()) {
+        this.alternates.set(i);
+      }
+      this.types[i] = selector.qualifiedType().qualified();
+      this.interceptorBindings[i] = selector.interceptorBindings();
+      if (qualifierMasks != null) {
+        final Qualifiers<?> qualifiers = selector.qualifiedType().qualifiers();
+        long mask = 0L;
+        if (qualifiers != null) {
+          for (final Object qualifier : qualifiers) {
+            Long bit = qualifierBits.get(qualifier);
+            if (bit == null) {
+              if (qualifierBits.size() >= MAXIMUM_QUALIFIERS) {
+                qualifierMasks = null;
+                break;
+              }
+              bit = 1L << qualifierBits.size();
+              qualifierBits.put(qualifier, bit);
+            }
+            mask |= bit;
+          }
+        }
+        if (qualifierMasks != null) {
+          qualifierMasks[i] = mask;
+        }
+      }
+    }
+    this.qualifierMasks = qualifierMasks;
+    this.qualifierBits = qualifierMasks == null ? Map.of() : qualifierBits;
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns the {@linkplain Prioritized#priority() priority} of the
+   * {@link Bean} at the supplied position.
+   *
+   * @param i the position
+   *
+   * @return the priority of the {@link Bean} at the supplied position
+   */
+  final int priority(final int i) {
+    return this.priorities[i];
+  }
+
+  /**
+   * Returns whether the {@link Bean} at the supplied position is an
+   * {@linkplain Alternate#alternate() alternate}.
+   *
+   * @param i the position
+   *
+   * @return whether the {@link Bean} at the supplied position is an
+   * alternate
+   */
+  final boolean alternate(final int i) {
+    return this.alternates.get(i);
+  }
+
+  /**
+   * Returns the {@link Type} of the {@link Bean} at the supplied
+   * position.
+   *
+   * @param i the position
+   *
+   * @return the {@link Type} of the {@link Bean} at the supplied
+   * position
+   */
+  final Type<?> type(final int i) {
+    return this.types[i];
+  }
+
+  /**
+   * Returns the {@link InterceptorBindings} of the {@link Bean} at
+   * the supplied position.
+   *
+   * @param i the position
+   *
+   * @return the {@link InterceptorBindings} of the {@link Bean} at
+   * the supplied position; may be {@code null}
+   */
+  final InterceptorBindings<?> interceptorBindings(final int i) {
+    return this.interceptorBindings[i];
+  }
+
+  /**
+   * Returns {@code true} if every distinct qualifier in this registry
+   * has been assigned a bit, such that the {@link #mask(Qualifiers)}
+   * and {@link #qualified(int, long)} methods may be used.
+   *
+   * @return {@code true} if this registry is maskable
+   */
+  final boolean maskable() {
+    return this.qualifierMasks != null;
+  }
+
+  /**
+   * Returns a mask representing the supplied {@link Selector}
+   * qualifiers, suitable for passing to the {@link #qualified(int,
+   * long)} method.
+   *
+   * @param selectorQualifiers the qualifiers of a {@link Selector};
+   * may be {@code null}
+   *
+   * @return a mask
+   *
+   * @exception IllegalStateException if this registry is not
+   * {@linkplain #maskable() maskable}
+   */
+  final long mask(final Qualifiers<?> selectorQualifiers) {
+    if (!this.maskable()) {
+      throw new IllegalStateException();
+    }
+    long mask = 0L;
+    if (selectorQualifiers != null) {
+      for (final Object qualifier : selectorQualifiers) {
+        final Long bit = this.qualifierBits.get(qualifier);
+        mask |= bit == null ? UNKNOWN : bit.longValue();
+      }
+    }
+    return mask;
+  }
+
+  /**
+   * Returns {@code true} if the qualifiers of the {@link Bean} at the
+   * supplied position would be {@linkplain
+   * Selector#selects(Qualifiers) selected by} the {@link Selector}
+   * qualifiers represented by the supplied {@linkplain
+   * #mask(Qualifiers) mask}.
+   *
+   * @param i the position
+   *
+   * @param selectorMask a mask returned by the {@link
+   * #mask(Qualifiers)} method
+   *
+   * @return {@code true} if the {@link Bean} at the supplied position
+   * is qualified
+   *
+   * @exception NullPointerException if this registry is not
+   * {@linkplain #maskable() maskable}
+   *
+   * @see Selector#selects(Qualifiers)
+   */
+  final boolean qualified(final int i, final long selectorMask) {
+    final long mask = this.qualifierMasks[i];
+    if (selectorMask == 0L) {
+      return mask == 0L || (mask & DEFAULT) != 0L || mask == ANY;
+    } else if (mask == 0L) {
+      return (selectorMask & (ANY | DEFAULT)) != 0L;
+    }
+    return mask == ANY || (mask & selectorMask) == selectorMask;
+  }
+
+}
@@ -26,22 +26,28 @@ public class CompositeBeanListSource implements BeanListSource {
 
   private final List<Bean<?>> beans;
 
+  private final DeduplicationStatistics deduplicationStatistics;
+
   private CompositeBeanListSource(final Iterable<? extends Collection<Bean<?>>> beanCollections) {
     this(beanCollections == null ? Collections.emptyIterator() : beanCollections.iterator());
   }
   
   private CompositeBeanListSource(final Iterator<? extends Collection<Bean<?>>> iterator) {
     super();
+    final Deduplicator deduplicator = new Deduplicator();
     if (iterator != null && iterator.hasNext()) {
       final ArrayList<Bean<?>> beans = new ArrayList<>(64);
       while (iterator.hasNext()) {
-        beans.addAll(iterator.next());
+        for (final Bean<?> bean : iterator.next()) {
+          beans.add(deduplicator.deduplicate(bean));
+        }
       }
       beans.trimToSize();
       this.beans = Collections.unmodifiableList(beans);
     } else {
       this.beans = List.of();
     }
+    this.deduplicationStatistics = deduplicator.statistics();
   }
 
   @Override // BeanListSource
@@ -49,6 +55,18 @@ public class CompositeBeanListSource implements BeanListSource {
     return this.beans;
   }
 
+  /**
+   * Returns a {@link DeduplicationStatistics} describing how much
+   * {@link Bean} metadata was found to be duplicated, and replaced by
+   * shared canonical instances, when this {@link
+   * CompositeBeanListSource} was created.
+   *
+   * @return a {@link DeduplicationStatistics}; never {@code null}
+   */
+  public final DeduplicationStatistics deduplicationStatistics() {
+    return this.deduplicationStatistics;
+  }
+
   public static final CompositeBeanListSource of(final Iterable<? extends Collection<Bean<?>>> beanCollections) {
     return new CompositeBeanListSource(beanCollections);
   }
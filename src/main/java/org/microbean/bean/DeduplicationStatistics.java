@@ -0,0 +1,49 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2022 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.bean;
+
+/**
+ * A snapshot of the cumulative effect of canonicalizing the metadata
+ * ({@link Id}s, {@link Selector}s, {@link
+ * org.microbean.qualifier.Qualifiers}, {@link org.microbean.type.Type}s
+ * and {@link org.microbean.interceptor.InterceptorBindings}) of {@link
+ * Bean}s as they were loaded.
+ *
+ * @param beans the number of {@link Bean}s processed
+ *
+ * @param duplicates the number of metadata objects that were
+ * replaced by an equal, canonical instance and so may be reclaimed
+ *
+ * @param qualifiers the number of distinct {@link
+ * org.microbean.qualifier.Qualifiers} retained
+ *
+ * @param types the number of distinct {@link
+ * org.microbean.type.Type}s retained
+ *
+ * @param interceptorBindings the number of distinct {@link
+ * org.microbean.interceptor.InterceptorBindings} retained
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see Beans#deduplicationStatistics()
+ *
+ * @see CompositeBeanListSource#deduplicationStatistics()
+ */
+public final record DeduplicationStatistics(long beans, long duplicates, int qualifiers, int types, int interceptorBindings) {
+
+}
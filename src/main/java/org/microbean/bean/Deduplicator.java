@@ -0,0 +1,256 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2022 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.bean;
+
+import java.util.Collection;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import org.microbean.interceptor.InterceptorBindings;
+
+import org.microbean.qualifier.Qualified;
+import org.microbean.qualifier.Qualifier;
+import org.microbean.qualifier.Qualifiers;
+
+import org.microbean.type.Type;
+
+/**
+ * Replaces the metadata of {@link Bean}s with equal, canonical
+ * instances so that {@link Bean}s sharing, for example, the same
+ * {@link Qualifiers} share the same {@link Qualifiers} object.
+ *
+ * <p>Canonicalization proceeds from the outside in: an {@link Id}
+ * equal to one already seen replaces the whole of its object graph;
+ * otherwise its {@link Selector} is canonicalized, and so on down to
+ * its {@link Qualifiers}, {@link Type} and {@link
+ * InterceptorBindings}.  A {@link Bean} is rebuilt only if some part
+ * of it was replaced, and is always {@linkplain Object#equals(Object)
+ * equal} to the original.</p>
+ *
+ * <p>A {@link Deduplicator} only ever grows.  When {@link Bean}s are
+ * removed, the {@link #retaining(Collection)} method yields a new
+ * {@link Deduplicator} that holds only the metadata of the {@link
+ * Bean}s that remain.</p>
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see DeduplicationStatistics
+ */
+final class Deduplicator {
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  private final Interner<Id> ids;
+
+  private final Interner<Selector> selectors;
+
+  private final Interner<Qualified<?, ? extends Type<?>>> qualifieds;
+
+  private final Interner<Qualifiers<?>> qualifiers;
+
+  private final Interner<Type<?>> types;
+
+  private final Interner<InterceptorBindings<?>> interceptorBindings;
+
+  private final Interner<Qualifier<?>> scopeIds;
+
+  private final LongAdder beans;
+
+  private final LongAdder duplicates;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link Deduplicator}.
+   */
+  Deduplicator() {
+    super();
+    this.ids = new Interner<>();
+    this.selectors = new Interner<>();
+    this.qualifieds = new Interner<>();
+    this.qualifiers = new Interner<>();
+    this.types = new Interner<>();
+    this.interceptorBindings = new Interner<>();
+    this.scopeIds = new Interner<>();
+    this.beans = new LongAdder();
+    this.duplicates = new LongAdder();
+  }
+
+  private Deduplicator(final Deduplicator prior) {
+    this();
+    this.beans.add(prior.beans.sum());
+    this.duplicates.add(prior.duplicates.sum());
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns a {@link Bean} {@linkplain Object#equals(Object) equal}
+   * to the supplied {@link Bean} whose metadata is canonical.
+   *
+   * @param <I> the type of the {@link Bean}'s instances
+   *
+   * @param bean the {@link Bean}; may be {@code null} in which case
+   * {@code null} will be returned
+   *
+   * @return a {@link Bean} equal to the supplied {@link Bean}, which
+   * will be the supplied {@link Bean} itself if its metadata was
+   * already canonical, or {@code null}
+   */
+  final <I> Bean<I> deduplicate(final Bean<I> bean) {
+    if (bean == null) {
+      return null;
+    }
+    this.beans.increment();
+    final Id id = bean.id();
+    final Id canonicalId = this.id(id);
+    return canonicalId == id ? bean : Bean.of(bean.factory(), canonicalId);
+  }
+
+  /**
+   * Returns a new {@link Deduplicator} whose canonical instances are
+   * exactly those referred to by the supplied {@link Bean}s, which
+   * must already have been {@linkplain #deduplicate(Bean)
+   * deduplicated} by this {@link Deduplicator}.
+   *
+   * <p>Statistics are carried over.  Metadata referred to only by
+   * {@link Bean}s not supplied is no longer retained.</p>
+   *
+   * @param retained the {@link Bean}s whose metadata should be
+   * retained; must not be {@code null}
+   *
+   * @return a new {@link Deduplicator}; never {@code null}
+   *
+   * @exception NullPointerException if {@code retained} is {@code
+   * null}
+   */
+  final Deduplicator retaining(final Collection<? extends Bean<?>> retained) {
+    final Deduplicator d = new Deduplicator(this);
+    for (final Bean<?> bean : retained) {
+      d.retain(bean.id());
+    }
+    return d;
+  }
+
+  /**
+   * Returns a {@link DeduplicationStatistics} describing this {@link
+   * Deduplicator} at the moment of invocation.
+   *
+   * @return a {@link DeduplicationStatistics}; never {@code null}
+   */
+  final DeduplicationStatistics statistics() {
+    return
+      new DeduplicationStatistics(this.beans.sum(),
+                                  this.duplicates.sum(),
+                                  this.qualifiers.size(),
+                                  this.types.size(),
+                                  this.interceptorBindings.size());
+  }
+
+  private final Id id(final Id id) {
+    Id canonical = this.canonical(this.ids, id);
+    if (canonical == id) {
+      // id is newly canonical; canonicalize what it refers to and
+      // replace it if anything changed.
+      final Selector selector = this.selector(id.selector());
+      final Qualifier<?> scopeId = this.canonical(this.scopeIds, id.governingScopeId());
+      if (selector != id.selector() || scopeId != id.governingScopeId()) {
+        canonical = Id.of(selector, scopeId, id.priority());
+        this.ids.replace(id, canonical);
+      }
+    }
+    return canonical;
+  }
+
+  private final Selector selector(final Selector selector) {
+    Selector canonical = this.canonical(this.selectors, selector);
+    if (canonical == selector) {
+      final Qualified<?, ? extends Type<?>> qualifiedType = this.qualified(selector.qualifiedType());
+      final InterceptorBindings<?> interceptorBindings = selector.interceptorBindings();
+      final InterceptorBindings<?> canonicalInterceptorBindings =
+        interceptorBindings == null ? null : this.canonical(this.interceptorBindings, interceptorBindings);
+      if (qualifiedType != selector.qualifiedType() || canonicalInterceptorBindings != interceptorBindings) {
+        canonical = Selector.of(qualifiedType, canonicalInterceptorBindings);
+        this.selectors.replace(selector, canonical);
+      }
+    }
+    return canonical;
+  }
+
+  private final Qualified<?, ? extends Type<?>> qualified(final Qualified<?, ? extends Type<?>> qualified) {
+    Qualified<?, ? extends Type<?>> canonical = this.canonical(this.qualifieds, qualified);
+    if (canonical == qualified) {
+      final Qualifiers<?> qualifiers = qualified.qualifiers();
+      final Qualifiers<?> canonicalQualifiers = qualifiers == null ? null : this.canonical(this.qualifiers, qualifiers);
+      final Type<?> type = qualified.qualified();
+      final Type<?> canonicalType = type == null ? null : this.canonical(this.types, type);
+      if (canonicalQualifiers != qualifiers || canonicalType != type) {
+        canonical = Qualified.of(canonicalQualifiers, canonicalType);
+        this.qualifieds.replace(qualified, canonical);
+      }
+    }
+    return canonical;
+  }
+
+  // id and everything it refers to are already canonical, so they
+  // are interned as they are, without being counted.
+  private final void retain(final Id id) {
+    if (this.ids.intern(id) == id) {
+      this.scopeIds.intern(id.governingScopeId());
+      final Selector selector = id.selector();
+      if (this.selectors.intern(selector) == selector) {
+        final InterceptorBindings<?> interceptorBindings = selector.interceptorBindings();
+        if (interceptorBindings != null) {
+          this.interceptorBindings.intern(interceptorBindings);
+        }
+        final Qualified<?, ? extends Type<?>> qualified = selector.qualifiedType();
+        if (this.qualifieds.intern(qualified) == qualified) {
+          final Qualifiers<?> qualifiers = qualified.qualifiers();
+          if (qualifiers != null) {
+            this.qualifiers.intern(qualifiers);
+          }
+          final Type<?> type = qualified.qualified();
+          if (type != null) {
+            this.types.intern(type);
+          }
+        }
+      }
+    }
+  }
+
+  private final <T> T canonical(final Interner<T> interner, final T t) {
+    final T canonical = interner.intern(t);
+    if (canonical != t) {
+      this.duplicates.increment();
+    }
+    return canonical;
+  }
+
+}
@@ -54,6 +54,8 @@ import static org.microbean.qualifier.ConstantDescs.CD_Qualifier;
 public final record Id(Selector selector, Qualifier<?> governingScopeId, int priority)
   implements Alternate, Constable, ScopeMember {
 
+  private static final Interner<Id> INTERNER = new Interner<>();
+
   public Id {
     Objects.requireNonNull(selector, "selector");
     Objects.requireNonNull(governingScopeId, "governingScopeId");
@@ -63,6 +65,32 @@ public final record Id(Selector selector, Qualifier<?> governingScopeId, int pri
     return of(selector, this.governingScopeId(), this.priority());
   }
   
+  /**
+   * Returns the canonical {@link Id} {@linkplain #equals(Object)
+   * equal to} this one, whose {@linkplain #selector() selector} is
+   * itself {@linkplain Selector#intern() interned}.
+   *
+   * <p>Interned {@link Id}s are retained for the life of the virtual
+   * machine.</p>
+   *
+   * @return the canonical {@link Id} equal to this one; never {@code
+   * null}
+   *
+   * @nullability This method never returns {@code null}.
+   *
+   * @idempotency This method is idempotent and deterministic.
+   *
+   * @threadsafety This method is safe for concurrent use by multiple
+   * threads.
+   *
+   * @see Selector#intern()
+   */
+  public final Id intern() {
+    final Selector selector = this.selector();
+    final Selector canonicalSelector = selector.intern();
+    return INTERNER.intern(canonicalSelector == selector ? this : this.with(canonicalSelector));
+  }
+
   @Override // Alternate
   public final boolean alternate() {
     return Alternate.super.alternate() && !this.selector().interceptorBindings().isEmpty();
@@ -0,0 +1,135 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2022 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.bean;
+
+import java.util.Arrays;
+
+/**
+ * A small, fixed-size, direct-mapped cache whose keys are compared by
+ * identity and located by {@linkplain System#identityHashCode(Object)
+ * identity hash code}.
+ *
+ * <p>A probe costs one identity hash, one array read and one
+ * reference comparison; neither {@link Object#hashCode()} nor {@link
+ * Object#equals(Object)} is ever invoked.  A new entry simply
+ * overwrites whatever occupied its slot.  It is therefore suited to
+ * fronting a slower cache for keys, such as {@linkplain
+ * Selector#intern() interned} {@link Selector}s, that are
+ * routinely presented as the very same instance.</p>
+ *
+ * <p>No locks are used.  Entries are immutable, so a racing reader
+ * sees either a complete entry or none.</p>
+ *
+ * @param <K> the type of keys
+ *
+ * @param <V> the type of values
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ */
+final class IdentityCache<K, V> {
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  private final Entry<?, ?>[] entries;
+
+  private final int mask;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link IdentityCache}.
+   *
+   * @param size the desired number of slots, which will be rounded
+   * up to a power of two between {@code 16} and {@code 65536}
+   */
+  IdentityCache(final int size) {
+    super();
+    final int slots = size <= 16 ? 16 : Math.min(1 << 16, Integer.highestOneBit(size - 1) << 1);
+    this.entries = new Entry<?, ?>[slots];
+    this.mask = slots - 1;
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns the value cached under the supplied key (compared by
+   * identity), or {@code null}.
+   *
+   * @param key the key; may be {@code null} in which case {@code
+   * null} will be returned
+   *
+   * @return the cached value, or {@code null}
+   */
+  @SuppressWarnings("unchecked")
+  final V get(final K key) {
+    final Entry<?, ?> entry = this.entries[System.identityHashCode(key) & this.mask];
+    return entry != null && entry.key == key ? (V)entry.value : null;
+  }
+
+  /**
+   * Caches the supplied value under the supplied key, displacing
+   * whatever entry occupied its slot.
+   *
+   * @param key the key; must not be {@code null}
+   *
+   * @param value the value; must not be {@code null}
+   */
+  final void put(final K key, final V value) {
+    this.entries[System.identityHashCode(key) & this.mask] = new Entry<>(key, value);
+  }
+
+  /**
+   * Removes all entries from this {@link IdentityCache}.
+   */
+  final void clear() {
+    Arrays.fill(this.entries, null);
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  private static final class Entry<K, V> {
+
+    private final K key;
+
+    private final V value;
+
+    private Entry(final K key, final V value) {
+      super();
+      this.key = key;
+      this.value = value;
+    }
+
+  }
+
+}
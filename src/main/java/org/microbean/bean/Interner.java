@@ -0,0 +1,125 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2022 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.bean;
+
+import java.util.Objects;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A pool of canonical instances of a value type, such that {@linkplain
+ * Object#equals(Object) equal} values {@linkplain #intern(Object)
+ * interned} by the same {@link Interner} are identical.
+ *
+ * <p>Canonical instances are retained for the life of the {@link
+ * Interner}, so only values drawn from a bounded set should be
+ * interned.</p>
+ *
+ * @param <T> the type of value
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see Selector#intern()
+ *
+ * @see Id#intern()
+ */
+final class Interner<T> {
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  private final ConcurrentMap<T, T> canonicals;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link Interner}.
+   */
+  Interner() {
+    super();
+    this.canonicals = new ConcurrentHashMap<>();
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns the canonical instance {@linkplain Object#equals(Object)
+   * equal to} the supplied value, making the supplied value canonical
+   * if there is none yet.
+   *
+   * @param t the value; must not be {@code null}
+   *
+   * @return the canonical instance; never {@code null}
+   *
+   * @exception NullPointerException if {@code t} is {@code null}
+   */
+  final T intern(final T t) {
+    final T canonical = this.canonicals.get(Objects.requireNonNull(t, "t"));
+    if (canonical != null) {
+      return canonical;
+    }
+    final T existing = this.canonicals.putIfAbsent(t, t);
+    return existing == null ? t : existing;
+  }
+
+  /**
+   * Makes the supplied replacement, which must be {@linkplain
+   * Object#equals(Object) equal to} the supplied canonical instance,
+   * canonical in its stead, if the supplied canonical instance is
+   * still canonical.
+   *
+   * @param canonical the current canonical instance; must not be
+   * {@code null}
+   *
+   * @param replacement the new canonical instance; must not be {@code
+   * null}
+   *
+   * @exception NullPointerException if either argument is {@code
+   * null}
+   */
+  final void replace(final T canonical, final T replacement) {
+    // Remove rather than replace the mapping so that the map does not
+    // go on referring to the old instance as its key.
+    if (this.canonicals.remove(canonical, canonical)) {
+      this.canonicals.putIfAbsent(replacement, replacement);
+    }
+  }
+
+  /**
+   * Returns the number of canonical instances held by this {@link
+   * Interner}.
+   *
+   * @return the number of canonical instances
+   */
+  final int size() {
+    return this.canonicals.size();
+  }
+
+}
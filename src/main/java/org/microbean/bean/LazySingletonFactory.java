@@ -0,0 +1,321 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2022 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.bean;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+import java.util.Objects;
+
+/**
+ * A {@link Factory} that {@linkplain Factory#create(Creation)
+ * creates} its product, by way of another {@link Factory}, exactly
+ * once, and thereafter returns it from both its {@link
+ * #create(Creation)} and {@link #singleton()} methods.
+ *
+ * <p>Once the product has been created, reading it involves a single
+ * volatile read and no locking.  Threads that request the product
+ * while it is being created wait for its creation to complete without
+ * holding any monitor, so waiting virtual threads do not pin their
+ * carriers, and may be interrupted.  If creation fails, every thread
+ * waiting for it receives the failure, and the next request tries
+ * again.</p>
+ *
+ * <p>{@linkplain #destroy(Object) Destroying} the product does not
+ * cause it to be forgotten: in keeping with the {@link
+ * Singleton#singleton()} contract, on which callers such as {@link
+ * Beans} rely, a {@link LazySingletonFactory} goes on returning its
+ * product, destroyed or not, forever afterward.  A product that must
+ * be recreated after destruction calls for a new {@link
+ * LazySingletonFactory}.</p>
+ *
+ * @param <I> the type of the product
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see #singleton()
+ *
+ * @see Singleton
+ */
+public final class LazySingletonFactory<I> implements Factory<I> {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  // Denotes a product of null.
+  private static final Object NULL = new Object();
+
+  private static final VarHandle STATE;
+
+  static {
+    try {
+      STATE = MethodHandles.lookup().findVarHandle(LazySingletonFactory.class, "state", Object.class);
+    } catch (final NoSuchFieldException | IllegalAccessException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  private final Factory<I> factory;
+
+  // null (not yet created), a Pending, NULL, or the product
+  private volatile Object state;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link LazySingletonFactory}.
+   *
+   * @param factory the {@link Factory} that will create the product;
+   * must not be {@code null}
+   *
+   * @exception NullPointerException if {@code factory} is {@code
+   * null}
+   *
+   * @see #of(Factory)
+   */
+  public LazySingletonFactory(final Factory<I> factory) {
+    super();
+    this.factory = Objects.requireNonNull(factory, "factory");
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns the {@link Factory} that creates this {@link
+   * LazySingletonFactory}'s product.
+   *
+   * @return the {@link Factory}; never {@code null}
+   *
+   * @nullability This method never returns {@code null}.
+   *
+   * @idempotency This method is idempotent and deterministic.
+   *
+   * @threadsafety This method is safe for concurrent use by multiple
+   * threads.
+   */
+  public final Factory<I> factory() {
+    return this.factory;
+  }
+
+  /**
+   * Returns the product, creating it with the {@linkplain #factory()
+   * underlying <code>Factory</code>} and the supplied {@link
+   * Creation} if no thread has yet done so, or waiting for its
+   * creation to complete if another thread is creating it.
+   *
+   * <p>Only the {@link Creation} supplied by the thread that actually
+   * creates the product is used.</p>
+   *
+   * @param c the {@link Creation}; passed to the {@linkplain
+   * #factory() underlying <code>Factory</code>}
+   *
+   * @return the product, which may be {@code null} if the {@linkplain
+   * #factory() underlying <code>Factory</code>} produced {@code null}
+   *
+   * @exception IllegalStateException if invoked by the thread that
+   * is creating the product, i.e. if creation of the product requires
+   * the product
+   *
+   * @exception java.util.concurrent.CancellationException if the
+   * calling thread is interrupted while waiting for another thread to
+   * create the product; its interrupt status is restored
+   *
+   * @exception RuntimeException if creation of the product fails
+   *
+   * @nullability This method may return {@code null}.
+   *
+   * @idempotency Once the product has been created, this method is
+   * idempotent and deterministic.
+   *
+   * @threadsafety This method is safe for concurrent use by multiple
+   * threads.
+   */
+  @Override // Factory<I>
+  public final I create(final Creation<I> c) {
+    while (true) {
+      final Object state = this.state; // volatile read
+      if (state == null) {
+        final Pending pending = new Pending();
+        if (STATE.compareAndSet(this, null, pending)) {
+          return this.create(pending, c);
+        }
+      } else if (state instanceof Pending pending) {
+        pending.await(this.factory);
+        // Loop to read the state that the creating thread published.
+      } else {
+        return product(state);
+      }
+    }
+  }
+
+  private final I create(final Pending pending, final Creation<I> c) {
+    final I product;
+    try {
+      product = Pipeline.createWith(this.factory, c);
+    } catch (final Throwable t) {
+      // Let a subsequent request try again.  t may be a checked
+      // exception thrown sneakily; it is rethrown as-is.
+      this.state = null; // volatile write
+      pending.fail(t);
+      throw t;
+    }
+    this.state = product == null ? NULL : product; // volatile write
+    pending.complete();
+    return product;
+  }
+
+  /**
+   * Returns the result of invoking the {@link #create(Creation)}
+   * method with the supplied {@link Creation}.
+   *
+   * @param c the {@link Creation}; passed to the {@link
+   * #create(Creation)} method
+   *
+   * @return the product, which may be {@code null}
+   *
+   * @see #create(Creation)
+   */
+  @Override // Factory<I>
+  public final I produce(final Creation<I> c) {
+    return this.create(c);
+  }
+
+  /**
+   * Returns the product if it has been created and is not {@code
+   * null}, or {@code null} in all other cases.
+   *
+   * <p>In keeping with the {@link Singleton#singleton()} contract,
+   * once this method returns a non-{@code null} value it returns that
+   * same value forever afterward.</p>
+   *
+   * @return the product, or {@code null}
+   *
+   * @nullability This method may return {@code null}.
+   *
+   * @idempotency This method is idempotent and deterministic once it
+   * returns a non-{@code null} value.
+   *
+   * @threadsafety This method is safe for concurrent use by multiple
+   * threads.
+   */
+  @Override // Singleton<I>
+  public final I singleton() {
+    final Object state = this.state; // volatile read
+    return state == null || state instanceof Pending ? null : product(state);
+  }
+
+  @Override // Factory<I>
+  public final boolean destroys() {
+    return this.factory.destroys();
+  }
+
+  @Override // Factory<I>
+  public final void preDestroy(final I i, final References r) {
+    this.factory.preDestroy(i, r);
+  }
+
+  /**
+   * Destroys the supplied product with the {@linkplain #factory()
+   * underlying <code>Factory</code>}.
+   *
+   * <p>The product is not forgotten; this {@link
+   * LazySingletonFactory} goes on returning it.</p>
+   *
+   * @param i the product to destroy; may be {@code null}
+   */
+  @Override // Factory<I>
+  public final void destroy(final I i) {
+    this.factory.destroy(i);
+  }
+
+  /**
+   * Destroys the supplied product with the {@linkplain #factory()
+   * underlying <code>Factory</code>}.
+   *
+   * <p>The product is not forgotten; this {@link
+   * LazySingletonFactory} goes on returning it.</p>
+   *
+   * @param i the product to destroy; may be {@code null}
+   *
+   * @param d the {@link Destruction}; passed to the {@linkplain
+   * #factory() underlying <code>Factory</code>}
+   */
+  @Override // Factory<I>
+  public final void destroy(final I i, final Destruction d) {
+    this.factory.destroy(i, d);
+  }
+
+  @Override // Object
+  public final String toString() {
+    return this.getClass().getSimpleName() + "[" + this.factory + "]";
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Returns a {@link LazySingletonFactory} that creates its product
+   * with the supplied {@link Factory}, or the supplied {@link Factory}
+   * itself if it is already a {@link LazySingletonFactory}.
+   *
+   * @param <I> the type of the product
+   *
+   * @param factory the {@link Factory}; must not be {@code null}
+   *
+   * @return a {@link LazySingletonFactory}; never {@code null}
+   *
+   * @exception NullPointerException if {@code factory} is {@code
+   * null}
+   *
+   * @nullability This method never returns {@code null}.
+   *
+   * @idempotency This method is idempotent and deterministic.
+   *
+   * @threadsafety This method is safe for concurrent use by multiple
+   * threads.
+   */
+  public static final <I> LazySingletonFactory<I> of(final Factory<I> factory) {
+    return factory instanceof LazySingletonFactory<I> lsf ? lsf : new LazySingletonFactory<>(factory);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static final <I> I product(final Object state) {
+    return state == NULL ? null : (I)state;
+  }
+
+}
@@ -0,0 +1,260 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2022 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.bean;
+
+import java.util.Objects;
+
+import java.util.function.Predicate;
+
+import org.microbean.interceptor.InterceptorBindings;
+
+import org.microbean.qualifier.Qualifiers;
+
+import org.microbean.type.Type;
+
+import static org.microbean.bean.Selector.ANY_INTERCEPTOR_BINDINGS;
+import static org.microbean.bean.Selector.ANY_QUALIFIER;
+import static org.microbean.bean.Selector.DEFAULT_QUALIFIER;
+
+/**
+ * A {@link Predicate} compiled once from a {@link Selector} that
+ * tests {@link Bean}s exactly as {@link Selector#selects(Bean)} would.
+ *
+ * <p>{@link Selector#selects(Selector)} re-examines the {@link
+ * Selector}'s qualifiers, type and interceptor bindings on every
+ * call.  A {@link Matcher} makes those decisions once, when it is
+ * {@linkplain #of(Selector) compiled}, and is composed of small,
+ * specialized predicates for common shapes of {@link Selector}:
+ * {@link Selector#ANY_QUALIFIERS ANY} or no qualifiers, a single
+ * qualifier, a non-generic required class, and absent interceptor
+ * bindings, which are not tested at all.</p>
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see Selector#selects(Bean)
+ *
+ * @see Beans#predicate(Selector)
+ */
+abstract sealed class Matcher implements Predicate<Bean<?>> {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  private static final Predicate<Qualifiers<?>> UNQUALIFIED =
+    q -> q == null || q.isEmpty() || q.contains(DEFAULT_QUALIFIER) || onlyAny(q);
+
+  private static final Predicate<Qualifiers<?>> ANY = q -> q == null || q.isEmpty() || q.contains(ANY_QUALIFIER);
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  final Predicate<Qualifiers<?>> qualifiers;
+
+  final Predicate<Type<?>> type;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  private Matcher(final Predicate<Qualifiers<?>> qualifiers, final Predicate<Type<?>> type) {
+    super();
+    this.qualifiers = qualifiers;
+    this.type = type;
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  @Override // Predicate<Bean<?>>
+  public final boolean test(final Bean<?> bean) {
+    return bean != null && this.matches(bean.id().selector());
+  }
+
+  /**
+   * Returns {@code true} if and only if the {@link Selector} from
+   * which this {@link Matcher} was compiled {@linkplain
+   * Selector#selects(Selector) selects} the supplied {@link
+   * Selector}.
+   *
+   * @param selector the {@link Selector} to test; may be {@code null}
+   * in which case {@code false} will be returned
+   *
+   * @return {@code true} if the supplied {@link Selector} is selected
+   */
+  final boolean matches(final Selector selector) {
+    return
+      selector != null &&
+      this.qualifiers.test(selector.qualifiedType().qualifiers()) &&
+      this.matches(selector.qualifiedType().qualified(), selector.interceptorBindings());
+  }
+
+  /**
+   * Returns {@code true} if and only if a {@link Selector} with the
+   * supplied type and interceptor bindings, and with qualifiers
+   * already known to be selected, would be {@linkplain
+   * #matches(Selector) matched} by this {@link Matcher}.
+   *
+   * <p>This lets callers that have already tested qualifiers by
+   * other means, such as an index, test only what remains, reading
+   * the supplied values from wherever they are stored.</p>
+   *
+   * @param type the type; may be {@code null} in which case {@code
+   * false} will be returned
+   *
+   * @param interceptorBindings the interceptor bindings; may be {@code
+   * null}
+   *
+   * @return {@code true} if the type and interceptor bindings match
+   *
+   * @see CompactRegistry
+   */
+  abstract boolean matches(final Type<?> type, final InterceptorBindings<?> interceptorBindings);
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Compiles the supplied {@link Selector} into a {@link Matcher}.
+   *
+   * @param s the {@link Selector}; must not be {@code null}
+   *
+   * @return a new {@link Matcher}; never {@code null}
+   *
+   * @exception NullPointerException if {@code s} is {@code null}
+   */
+  static final Matcher of(final Selector s) {
+    final Predicate<Qualifiers<?>> qualifiers = qualifiers(s.qualifiedType().qualifiers());
+    final Predicate<Type<?>> type = type(s.qualifiedType().qualified());
+    final InterceptorBindings<?> interceptorBindings = s.interceptorBindings();
+    return
+      interceptorBindings == null ?
+      new Unbound(qualifiers, type) :
+      new Bound(qualifiers, type, interceptorBindings);
+  }
+
+  private static final Predicate<Qualifiers<?>> qualifiers(final Qualifiers<?> my) {
+    if (my == null || my.isEmpty()) {
+      return UNQUALIFIED;
+    } else if (my.size() == 1) {
+      final Object qualifier = my.iterator().next();
+      if (ANY_QUALIFIER.equals(qualifier)) {
+        return ANY;
+      }
+      final boolean matchesUnqualified = DEFAULT_QUALIFIER.equals(qualifier);
+      return q -> q == null || q.isEmpty() ? matchesUnqualified : q.contains(qualifier) || onlyAny(q);
+    }
+    final Object[] myQualifiers = new Object[my.size()];
+    int i = 0;
+    for (final Object qualifier : my) {
+      myQualifiers[i++] = qualifier;
+    }
+    final boolean matchesUnqualified = my.contains(DEFAULT_QUALIFIER) || my.contains(ANY_QUALIFIER);
+    return q -> {
+      if (q == null || q.isEmpty()) {
+        return matchesUnqualified;
+      } else if (onlyAny(q)) {
+        return true;
+      }
+      for (final Object qualifier : myQualifiers) {
+        if (!q.contains(qualifier)) {
+          return false;
+        }
+      }
+      return true;
+    };
+  }
+
+  private static final Predicate<Type<?>> type(final Type<?> required) {
+    if (required != null &&
+        required.object() instanceof Class<?> c &&
+        !c.isPrimitive() &&
+        !c.isArray() &&
+        c.getTypeParameters().length == 0) {
+      // Between two non-generic, non-primitive classes assignability
+      // is plain subtyping; anything else is left to the general
+      // check.
+      return t -> {
+        if (t == null) {
+          return false;
+        } else if (t.object() instanceof Class<?> beanClass && !beanClass.isPrimitive() && beanClass.getTypeParameters().length == 0) {
+          return c.isAssignableFrom(beanClass);
+        }
+        return Assignability.assignable(required, t);
+      };
+    }
+    return t -> t != null && Assignability.assignable(required, t);
+  }
+
+  private static final boolean onlyAny(final Qualifiers<?> q) {
+    return q.size() == 1 && q.contains(ANY_QUALIFIER);
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  private static final class Unbound extends Matcher {
+
+    private Unbound(final Predicate<Qualifiers<?>> qualifiers, final Predicate<Type<?>> type) {
+      super(qualifiers, type);
+    }
+
+    @Override // Matcher
+    final boolean matches(final Type<?> type, final InterceptorBindings<?> interceptorBindings) {
+      return this.type.test(type);
+    }
+
+  }
+
+  private static final class Bound extends Matcher {
+
+    private final InterceptorBindings<?> interceptorBindings;
+
+    private Bound(final Predicate<Qualifiers<?>> qualifiers,
+                  final Predicate<Type<?>> type,
+                  final InterceptorBindings<?> interceptorBindings) {
+      super(qualifiers, type);
+      this.interceptorBindings = Objects.requireNonNull(interceptorBindings, "interceptorBindings");
+    }
+
+    @Override // Matcher
+    final boolean matches(final Type<?> type, final InterceptorBindings<?> interceptorBindings) {
+      return
+        this.type.test(type) &&
+        (ANY_INTERCEPTOR_BINDINGS.equals(interceptorBindings) || this.interceptorBindings.equals(interceptorBindings));
+    }
+
+  }
+
+}
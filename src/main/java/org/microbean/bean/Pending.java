@@ -0,0 +1,140 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2022 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.bean;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * A placeholder for an instance that a particular thread is in the
+ * process of creating, on which other threads may {@linkplain
+ * #await(Object) wait} for that creation to finish.
+ *
+ * <p>Waiting threads park; no monitor is ever held, so waiting
+ * virtual threads do not pin their carriers.  Waiting may be
+ * interrupted.</p>
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see LazySingletonFactory
+ *
+ * @see BeanInstances
+ */
+final class Pending {
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  private final Thread thread;
+
+  private final CompletableFuture<Void> future;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link Pending} owned by the calling thread.
+   */
+  Pending() {
+    super();
+    this.thread = Thread.currentThread();
+    this.future = new CompletableFuture<>();
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Waits for the owning thread to {@linkplain #complete() complete}
+   * or {@linkplain #fail(Throwable) fail} creation.
+   *
+   * <p>If creation failed, the very {@link Throwable} with which it
+   * failed is rethrown, even if it is a checked exception.</p>
+   *
+   * @param creating what is doing the creating, such as a {@link
+   * Factory} or a {@link Bean}; used only to describe a circular
+   * creation; may be {@code null}
+   *
+   * @exception IllegalStateException if invoked by the owning thread,
+   * i.e. if creation requires the very instance being created
+   *
+   * @exception CancellationException if the calling thread is
+   * interrupted while waiting; its interrupt status is restored
+   */
+  final void await(final Object creating) {
+    if (this.thread == Thread.currentThread()) {
+      throw new IllegalStateException("circular creation: " + creating);
+    }
+    try {
+      this.future.get();
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw (CancellationException)new CancellationException("interrupted while awaiting creation").initCause(e);
+    } catch (final ExecutionException e) {
+      throw Pending.<RuntimeException>rethrow(e.getCause());
+    }
+  }
+
+  /**
+   * Releases all threads {@linkplain #await(Object) waiting} on this {@link
+   * Pending}.
+   *
+   * <p>The owning thread must publish the created instance before
+   * invoking this method.</p>
+   */
+  final void complete() {
+    this.future.complete(null);
+  }
+
+  /**
+   * Causes all threads {@linkplain #await(Object) waiting} on this {@link
+   * Pending} to throw the supplied {@link Throwable}.
+   *
+   * @param t the {@link Throwable}; must not be {@code null}
+   *
+   * @exception NullPointerException if {@code t} is {@code null}
+   */
+  final void fail(final Throwable t) {
+    this.future.completeExceptionally(t);
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  // Throws t, which the compiler treats as a T, so that a checked
+  // exception thrown by a creating thread reaches waiting threads
+  // unchanged.
+  @SuppressWarnings("unchecked")
+  private static final <T extends Throwable> RuntimeException rethrow(final Throwable t) throws T {
+    throw (T)t;
+  }
+
+}
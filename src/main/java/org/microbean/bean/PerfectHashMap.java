@@ -0,0 +1,278 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2022 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.bean;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable map backed by a minimal perfect hash function built
+ * with the <em>hash and displace</em> technique.
+ *
+ * <p>Every key occupies exactly one slot of a table exactly as large
+ * as the number of keys.  A lookup hashes its key once to find a
+ * bucket, reads that bucket's displacement, derives the slot, and
+ * confirms the key stored there with {@link Object#equals(Object)}.
+ * No locks, volatile reads or probing sequences are involved.</p>
+ *
+ * <p>Keys whose {@link Object#hashCode()} values collide outright
+ * cannot be separated by any displacement; they are kept in a small
+ * immutable overflow {@link Map} instead.</p>
+ *
+ * @param <K> the type of keys
+ *
+ * @param <V> the type of values
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see Beans#seal(java.util.Collection)
+ */
+final class PerfectHashMap<K, V> {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  private static final int MAXIMUM_DISPLACEMENT = 1 << 16;
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  // For each bucket, either a displacement (when non-negative) or
+  // -(slot + 1) (when negative) for buckets holding a single key.
+  private final int[] displacements;
+
+  private final Object[] keys;
+
+  private final Object[] values;
+
+  private final Map<K, V> overflow;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link PerfectHashMap} holding the mappings of the
+   * supplied {@link Map}.
+   *
+   * @param map the {@link Map} whose mappings will be copied; must
+   * not be {@code null} and must not contain {@code null} keys or
+   * values
+   *
+   * @exception NullPointerException if {@code map} is {@code null}
+   * or contains {@code null} keys or values
+   */
+  PerfectHashMap(final Map<? extends K, ? extends V> map) {
+    super();
+    // Partition keys into those with unique hash codes, which can be
+    // perfectly hashed, and the rest.
+    final Map<Integer, List<K>> byHash = new HashMap<>();
+    for (final K key : map.keySet()) {
+      byHash.computeIfAbsent(key.hashCode(), h -> new ArrayList<>(1)).add(key);
+    }
+    final List<K> keys = new ArrayList<>(byHash.size());
+    final Map<K, V> overflow = new HashMap<>();
+    for (final List<K> sameHash : byHash.values()) {
+      if (sameHash.size() == 1) {
+        keys.add(sameHash.get(0));
+      } else {
+        for (final K key : sameHash) {
+          overflow.put(key, map.get(key));
+        }
+      }
+    }
+    this.overflow = overflow.isEmpty() ? Map.of() : Map.copyOf(overflow);
+
+    final int size = keys.size();
+    final int bucketCount = Math.max(1, size / 2);
+    this.displacements = new int[bucketCount];
+    this.keys = new Object[size];
+    this.values = new Object[size];
+    if (size == 0) {
+      return;
+    }
+
+    // Assign keys to buckets.
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    final List<K>[] buckets = new List[bucketCount];
+    for (final K key : keys) {
+      final int b = bucket(key.hashCode(), bucketCount);
+      if (buckets[b] == null) {
+        buckets[b] = new ArrayList<>(2);
+      }
+      buckets[b].add(key);
+    }
+
+    // Place the largest buckets first, while the table is emptiest.
+    final Integer[] order = new Integer[bucketCount];
+    for (int i = 0; i < bucketCount; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, (b0, b1) -> Integer.compare(size(buckets[b1]), size(buckets[b0])));
+
+    final BitSet occupied = new BitSet(size);
+    final int[] slots = new int[keys.size()];
+    int nextFree = 0;
+    for (final int b : order) {
+      final List<K> bucket = buckets[b];
+      final int bucketSize = size(bucket);
+      if (bucketSize == 0) {
+        break;
+      } else if (bucketSize == 1) {
+        nextFree = occupied.nextClearBit(nextFree);
+        this.place(bucket.get(0), map, nextFree, occupied);
+        this.displacements[b] = -nextFree - 1;
+        continue;
+      }
+      boolean placed = false;
+      for (int d = 0; d < MAXIMUM_DISPLACEMENT && !placed; d++) {
+        placed = true;
+        for (int i = 0; i < bucketSize; i++) {
+          final int slot = slot(bucket.get(i).hashCode(), d, size);
+          if (occupied.get(slot)) {
+            placed = false;
+            break;
+          }
+          // Check the slot against the bucket's own earlier keys.
+          for (int j = 0; j < i; j++) {
+            if (slots[j] == slot) {
+              placed = false;
+              break;
+            }
+          }
+          if (!placed) {
+            break;
+          }
+          slots[i] = slot;
+        }
+        if (placed) {
+          for (int i = 0; i < bucketSize; i++) {
+            this.place(bucket.get(i), map, slots[i], occupied);
+          }
+          this.displacements[b] = d;
+        }
+      }
+      if (!placed) {
+        // Vanishingly unlikely; fail loudly rather than build a
+        // subtly broken table.
+        throw new IllegalStateException("unable to place bucket of size " + bucketSize);
+      }
+    }
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns the value mapped to the supplied key, or {@code null} if
+   * there is no such mapping.
+   *
+   * @param key the key; may be {@code null} in which case {@code
+   * null} will be returned
+   *
+   * @return the value mapped to the supplied key, or {@code null}
+   */
+  @SuppressWarnings("unchecked")
+  final V get(final Object key) {
+    if (key == null) {
+      return null;
+    }
+    final int size = this.keys.length;
+    if (size > 0) {
+      final int hashCode = key.hashCode();
+      final int d = this.displacements[bucket(hashCode, this.displacements.length)];
+      final int slot = d < 0 ? -d - 1 : slot(hashCode, d, size);
+      final Object k = this.keys[slot];
+      if (k == key || k.equals(key)) {
+        return (V)this.values[slot];
+      }
+    }
+    return this.overflow.isEmpty() ? null : this.overflow.get(key);
+  }
+
+  /**
+   * Returns the number of mappings in this {@link PerfectHashMap}.
+   *
+   * @return the number of mappings in this {@link PerfectHashMap}
+   */
+  final int size() {
+    return this.keys.length + this.overflow.size();
+  }
+
+  /**
+   * Returns a new {@link List} of the keys of this {@link
+   * PerfectHashMap}, in no particular order.
+   *
+   * @return a new {@link List} of keys; never {@code null}
+   */
+  @SuppressWarnings("unchecked")
+  final List<K> keys() {
+    final List<K> keys = new ArrayList<>(this.size());
+    for (final Object key : this.keys) {
+      keys.add((K)key);
+    }
+    keys.addAll(this.overflow.keySet());
+    return keys;
+  }
+
+  private final void place(final K key, final Map<? extends K, ? extends V> map, final int slot, final BitSet occupied) {
+    this.keys[slot] = key;
+    this.values[slot] = map.get(key);
+    occupied.set(slot);
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  private static final int size(final List<?> list) {
+    return list == null ? 0 : list.size();
+  }
+
+  private static final int bucket(final int hashCode, final int bucketCount) {
+    return Math.floorMod(mix(hashCode), bucketCount);
+  }
+
+  private static final int slot(final int hashCode, final int displacement, final int size) {
+    return Math.floorMod(mix(hashCode ^ (0x9e3779b9 * (displacement + 1))), size);
+  }
+
+  private static final int mix(final int h) {
+    int x = (h ^ (h >>> 16)) * 0x7feb352d;
+    x = (x ^ (x >>> 15)) * 0x846ca68b;
+    return x ^ (x >>> 16);
+  }
+
+}
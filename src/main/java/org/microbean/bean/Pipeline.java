@@ -0,0 +1,237 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2022 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.bean;
+
+/**
+ * A creation pipeline, compiled once per {@link Factory} class, that
+ * produces exactly what {@link Factory#create(Creation)} would but
+ * invokes only those stages that the {@link Factory} class actually
+ * overrides.
+ *
+ * <p>Most {@link Factory} implementations override only {@link
+ * Factory#produce(Creation)}, leaving {@link
+ * Factory#interceptedProduce(Creation)}, {@link
+ * Factory#initialize(Object, Creation)}, {@link
+ * Factory#initialized(Object, Creation)} and {@link
+ * Factory#intercept(Object, Creation)} as identity defaults.  For
+ * such a {@link Factory} {@link #create(Factory, Creation)} makes a
+ * single interface call, to {@link Factory#produce(Creation)}, where
+ * the default {@link Factory#create(Creation)} implementation makes
+ * six.</p>
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see Factory#create(Creation)
+ */
+abstract sealed class Pipeline {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  private static final int INTERCEPTED_PRODUCE = 1;
+
+  private static final int INITIALIZE = 1 << 1;
+
+  private static final int INITIALIZED = 1 << 2;
+
+  private static final int INTERCEPT = 1 << 3;
+
+  private static final Pipeline PRODUCE = new Produce();
+
+  private static final Pipeline CREATE = new Create();
+
+  private static final ClassValue<Pipeline> PIPELINES = new ClassValue<>() {
+      @Override
+      protected final Pipeline computeValue(final Class<?> c) {
+        if (overrides(c, "create", Creation.class)) {
+          // Whatever create(Creation) does is authoritative.
+          return CREATE;
+        }
+        int stages = 0;
+        if (overrides(c, "interceptedProduce", Creation.class)) {
+          stages |= INTERCEPTED_PRODUCE;
+        }
+        if (overrides(c, "initialize", Object.class, Creation.class)) {
+          stages |= INITIALIZE;
+        }
+        if (overrides(c, "initialized", Object.class, Creation.class)) {
+          stages |= INITIALIZED;
+        }
+        if (overrides(c, "intercept", Object.class, Creation.class)) {
+          stages |= INTERCEPT;
+        }
+        return stages == 0 ? PRODUCE : new Staged(stages);
+      }
+    };
+
+
+  /*
+   * Constructors.
+   */
+
+
+  private Pipeline() {
+    super();
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns the result of invoking {@link Factory#create(Creation)}
+   * on the supplied {@link Factory} with the supplied {@link
+   * Creation}, but without invoking any stage the {@link Factory}
+   * does not override.
+   *
+   * @param <I> the type of instance to create
+   *
+   * @param f a {@link Factory} whose class is the one for which this
+   * {@link Pipeline} was {@linkplain #of(Class) compiled}; must not
+   * be {@code null}
+   *
+   * @param c the {@link Creation}; passed to the {@link Factory}
+   *
+   * @return the created instance, which may be {@code null}
+   *
+   * @exception NullPointerException if {@code f} is {@code null}
+   */
+  abstract <I> I create(final Factory<I> f, final Creation<I> c);
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Returns the result of invoking {@link Factory#create(Creation)}
+   * on the supplied {@link Factory} with the supplied {@link
+   * Creation} by way of the {@link Pipeline} {@linkplain #of(Class)
+   * compiled} for the {@link Factory}'s class.
+   *
+   * @param <I> the type of instance to create
+   *
+   * @param f the {@link Factory}; must not be {@code null}
+   *
+   * @param c the {@link Creation}; passed to the {@link Factory}
+   *
+   * @return the created instance, which may be {@code null}
+   *
+   * @exception NullPointerException if {@code f} is {@code null}
+   */
+  static final <I> I createWith(final Factory<I> f, final Creation<I> c) {
+    return PIPELINES.get(f.getClass()).create(f, c);
+  }
+
+  /**
+   * Returns the {@link Pipeline} for the supplied {@link Factory}
+   * class, compiling it if necessary.
+   *
+   * @param c the {@link Factory} class; must not be {@code null}
+   *
+   * @return a {@link Pipeline}; never {@code null}
+   *
+   * @exception NullPointerException if {@code c} is {@code null}
+   *
+   * @exception IllegalArgumentException if {@code c} is not a {@link
+   * Factory} class
+   */
+  static final Pipeline of(final Class<?> c) {
+    return PIPELINES.get(c);
+  }
+
+  private static final boolean overrides(final Class<?> c, final String name, final Class<?>... parameterTypes) {
+    try {
+      return c.getMethod(name, parameterTypes).getDeclaringClass() != Factory.class;
+    } catch (final NoSuchMethodException e) {
+      // Not possible for a Factory class.
+      throw new IllegalArgumentException("c: " + c, e);
+    }
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  private static final class Produce extends Pipeline {
+
+    private Produce() {
+      super();
+    }
+
+    @Override // Pipeline
+    final <I> I create(final Factory<I> f, final Creation<I> c) {
+      return f.produce(c);
+    }
+
+  }
+
+  private static final class Create extends Pipeline {
+
+    private Create() {
+      super();
+    }
+
+    @Override // Pipeline
+    final <I> I create(final Factory<I> f, final Creation<I> c) {
+      return f.create(c);
+    }
+
+  }
+
+  private static final class Staged extends Pipeline {
+
+    private final boolean interceptedProduce;
+
+    private final boolean initialize;
+
+    private final boolean initialized;
+
+    private final boolean intercept;
+
+    private Staged(final int stages) {
+      super();
+      this.interceptedProduce = (stages & INTERCEPTED_PRODUCE) != 0;
+      this.initialize = (stages & INITIALIZE) != 0;
+      this.initialized = (stages & INITIALIZED) != 0;
+      this.intercept = (stages & INTERCEPT) != 0;
+    }
+
+    @Override // Pipeline
+    final <I> I create(final Factory<I> f, final Creation<I> c) {
+      I i = this.interceptedProduce ? f.interceptedProduce(c) : f.produce(c);
+      if (this.initialize) {
+        i = f.initialize(i, c);
+      }
+      if (this.initialized) {
+        i = f.initialized(i, c);
+      }
+      return this.intercept ? f.intercept(i, c) : i;
+    }
+
+  }
+
+}
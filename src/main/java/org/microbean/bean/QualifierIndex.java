@@ -0,0 +1,152 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2022 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.bean;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.microbean.qualifier.Qualifiers;
+
+import static org.microbean.bean.Selector.ANY_QUALIFIER;
+import static org.microbean.bean.Selector.DEFAULT_QUALIFIER;
+
+/**
+ * An immutable inverted index from each qualifier borne by any
+ * {@link Bean} to a {@link BitSet} of the positions, in a {@link
+ * List}, of the {@link Bean}s bearing it.
+ *
+ * <p>The {@link #qualified(Qualifiers)} method reproduces the
+ * semantics of {@link Selector#selects(Qualifiers)} for every {@link
+ * Bean} at once using a handful of {@link BitSet} operations.</p>
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see Selector#selects(Qualifiers)
+ *
+ * @see Beans
+ */
+final class QualifierIndex {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  private static final BitSet NONE = new BitSet(0);
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  // Positions of beans with null or empty qualifiers.
+  private final BitSet unqualified;
+
+  // Positions of beans whose sole qualifier is Selector.ANY_QUALIFIER.
+  private final BitSet onlyAny;
+
+  private final Map<Object, BitSet> positions;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  QualifierIndex(final List<? extends Bean<?>> beans) {
+    super();
+    final int size = beans.size();
+    this.unqualified = new BitSet(size);
+    this.onlyAny = new BitSet(size);
+    this.positions = new HashMap<>();
+    for (int i = 0; i < size; i++) {
+      final Qualifiers<?> qualifiers = beans.get(i).id().selector().qualifiedType().qualifiers();
+      if (qualifiers == null || qualifiers.isEmpty()) {
+        this.unqualified.set(i);
+      } else {
+        if (qualifiers.size() == 1 && qualifiers.contains(ANY_QUALIFIER)) {
+          this.onlyAny.set(i);
+        }
+        for (final Object qualifier : qualifiers) {
+          this.positions.computeIfAbsent(qualifier, q -> new BitSet(size)).set(i);
+        }
+      }
+    }
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns a new {@link BitSet} whose set bits are the positions of
+   * those {@link Bean}s whose qualifiers would be {@linkplain
+   * Selector#selects(Qualifiers) selected by} a {@link Selector}
+   * bearing the supplied {@link Qualifiers}.
+   *
+   * @param selectorQualifiers the {@link Qualifiers} of a {@link
+   * Selector}; may be {@code null}
+   *
+   * @return a new, mutable {@link BitSet}; never {@code null}
+   *
+   * @see Selector#selects(Qualifiers)
+   */
+  final BitSet qualified(final Qualifiers<?> selectorQualifiers) {
+    final BitSet qualified;
+    if (selectorQualifiers == null || selectorQualifiers.isEmpty()) {
+      qualified = (BitSet)this.unqualified.clone();
+      qualified.or(this.positions(DEFAULT_QUALIFIER));
+    } else {
+      qualified = this.allOf(selectorQualifiers);
+      if (selectorQualifiers.contains(DEFAULT_QUALIFIER) || selectorQualifiers.contains(ANY_QUALIFIER)) {
+        qualified.or(this.unqualified);
+      }
+    }
+    qualified.or(this.onlyAny);
+    return qualified;
+  }
+
+  private final BitSet allOf(final Qualifiers<?> selectorQualifiers) {
+    BitSet allOf = null;
+    for (final Object qualifier : selectorQualifiers) {
+      final BitSet positions = this.positions(qualifier);
+      if (positions.isEmpty()) {
+        return new BitSet();
+      } else if (allOf == null) {
+        allOf = (BitSet)positions.clone();
+      } else {
+        allOf.and(positions);
+        if (allOf.isEmpty()) {
+          break;
+        }
+      }
+    }
+    return allOf == null ? new BitSet() : allOf;
+  }
+
+  private final BitSet positions(final Object qualifier) {
+    return this.positions.getOrDefault(qualifier, NONE);
+  }
+
+}
@@ -0,0 +1,86 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2022 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.bean;
+
+/**
+ * The outcome of resolving a {@link Selector}: either a (possibly
+ * {@code null}) {@link Bean} or the {@link ResolutionException} that
+ * resolution produced.
+ *
+ * @param selector the {@link Selector} that was resolved; may be
+ * {@code null}
+ *
+ * @param bean the resolved {@link Bean}; may be {@code null}, and
+ * will be {@code null} if {@code exception} is non-{@code null}
+ *
+ * @param exception the {@link ResolutionException} produced by
+ * resolution; may be {@code null}
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see Beans#resolve(java.util.Collection)
+ */
+public final record Resolution(Selector selector, Bean<?> bean, ResolutionException exception) {
+
+  /**
+   * Creates a new {@link Resolution}.
+   *
+   * @param selector the {@link Selector} that was resolved; may be
+   * {@code null}
+   *
+   * @param bean the resolved {@link Bean}; may be {@code null}
+   *
+   * @param exception the {@link ResolutionException} produced by
+   * resolution; may be {@code null}
+   *
+   * @exception IllegalArgumentException if both {@code bean} and
+   * {@code exception} are non-{@code null}
+   */
+  public Resolution {
+    if (bean != null && exception != null) {
+      throw new IllegalArgumentException("bean: " + bean + "; exception: " + exception);
+    }
+  }
+
+  /**
+   * Returns the {@linkplain #bean() resolved <code>Bean</code>}, or
+   * throws the {@linkplain #exception() <code>ResolutionException</code>}
+   * if there is one.
+   *
+   * @return the {@linkplain #bean() resolved <code>Bean</code>}, which
+   * may be {@code null}
+   *
+   * @exception ResolutionException if {@link #exception()} returns a
+   * non-{@code null} value
+   *
+   * @nullability This method may return {@code null}.
+   *
+   * @idempotency This method is idempotent and deterministic.
+   *
+   * @threadsafety This method is safe for concurrent use by multiple
+   * threads.
+   */
+  public final Bean<?> orElseThrow() {
+    final ResolutionException exception = this.exception();
+    if (exception != null) {
+      throw exception;
+    }
+    return this.bean();
+  }
+
+}
@@ -67,6 +67,15 @@ public class ResolutionException extends RuntimeException {
     this.selector = selector;
   }
 
+  protected ResolutionException(final Selector selector,
+                                final String message,
+                                final Throwable cause,
+                                final boolean enableSuppression,
+                                final boolean writableStackTrace) {
+    super(message, cause, enableSuppression, writableStackTrace);
+    this.selector = selector;
+  }
+
   public final Selector selector() {
     return this.selector;
   }
@@ -0,0 +1,207 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2022 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.bean;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import java.util.function.BiFunction;
+
+/**
+ * The precomputed outcome of {@linkplain Resolver#resolve(Selector,
+ * List) resolving} a fixed {@link List} of {@link Alternate}s.
+ *
+ * <p>When the {@link Resolver} in question uses the standard {@link
+ * Resolver#reduce(Alternate, Alternate)} semantics, the {@link
+ * Alternate}s are ranked once, in a single pass, by ({@linkplain
+ * Alternate#alternate() alternate}, {@linkplain Prioritized#priority()
+ * priority}), as that method would rank them, so that the winner, or
+ * the ambiguous {@link Alternate}s that tie for first place, are
+ * known before the plan is first {@linkplain #resolve(Selector)
+ * used}, and each use is constant time.  Ranks may be read from a
+ * {@link CompactRegistry} rather than from the {@link Alternate}s
+ * themselves.  Otherwise the plan simply defers to {@link
+ * Resolver#resolve(Selector, List)}.</p>
+ *
+ * <p>Only a deferring plan is ever reduced in parallel, subject to
+ * the {@link Resolver}'s {@linkplain Resolver#Resolver(BiFunction,
+ * int) parallel threshold}.  The ranking pass is made only once per
+ * plan, and so is always sequential.</p>
+ *
+ * @param <T> the type of {@link Alternate}
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see Resolver#plan(List)
+ */
+final class ResolutionPlan<T extends Alternate> {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  // Non-alternates are preferred to every alternate, and tie with
+  // each other.
+  private static final long NON_ALTERNATE_RANK = Long.MAX_VALUE;
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  private final Resolver resolver;
+
+  // Non-null only if this plan defers to the Resolver.
+  private final List<? extends T> alternates;
+
+  private final T winner;
+
+  // Non-null only if the standard semantics found no winner.
+  private final List<T> unresolved;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link ResolutionPlan}.
+   *
+   * @param resolver the {@link Resolver} that will resolve; must not
+   * be {@code null}
+   *
+   * @param alternates the {@link Alternate}s to resolve; must not be
+   * {@code null}, must not contain {@code null} elements and must not
+   * be modified afterwards
+   *
+   * @param registry a {@link CompactRegistry} from which to read the
+   * rank of each {@link Alternate}; may be {@code null} in which case
+   * ranks will be read from the {@link Alternate}s themselves
+   *
+   * @param positions the positions in {@code registry} of each of the
+   * {@code alternates}, in order; ignored if {@code registry} is
+   * {@code null}
+   *
+   * @param standard whether {@code resolver} uses the standard {@link
+   * Resolver#reduce(Alternate, Alternate)} semantics
+   *
+   * @exception NullPointerException if {@code resolver} or {@code
+   * alternates} is {@code null}
+   */
+  ResolutionPlan(final Resolver resolver,
+                 final List<? extends T> alternates,
+                 final CompactRegistry registry,
+                 final int[] positions,
+                 final boolean standard) {
+    super();
+    this.resolver = resolver;
+    if (!standard) {
+      this.alternates = alternates;
+      this.winner = null;
+      this.unresolved = null;
+      return;
+    }
+    this.alternates = null;
+    final int size = alternates.size();
+    long best = Long.MIN_VALUE;
+    int first = -1;
+    int ties = 0;
+    for (int i = 0; i < size; i++) {
+      final long rank = registry == null ? rank(alternates.get(i)) : rank(registry, positions[i]);
+      if (first < 0 || rank > best) {
+        best = rank;
+        first = i;
+        ties = 1;
+      } else if (rank == best && alternates.get(i) != alternates.get(first)) {
+        // Resolver#reduce(Alternate, Alternate) returns an Alternate
+        // compared with itself, so only distinct ones tie.
+        ++ties;
+      }
+    }
+    if (ties == 1) {
+      this.winner = alternates.get(first);
+      this.unresolved = null;
+    } else {
+      this.winner = null;
+      if (ties == 0) {
+        this.unresolved = List.of();
+      } else {
+        final List<T> unresolved = new ArrayList<>(ties);
+        final Set<T> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int i = first; i < size; i++) {
+          final T t = alternates.get(i);
+          if ((registry == null ? rank(t) : rank(registry, positions[i])) == best && seen.add(t)) {
+            unresolved.add(t);
+          }
+        }
+        this.unresolved = Collections.unmodifiableList(unresolved);
+      }
+    }
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns the winning {@link Alternate}, or the result of the
+   * {@link Resolver}'s failure handler if there is none.
+   *
+   * @param selector the {@link Selector} being resolved; may be {@code
+   * null}
+   *
+   * @return the resolved {@link Alternate}, or whatever the failure
+   * handler returns
+   *
+   * @exception ResolutionException if resolution fails and the
+   * failure handler throws it
+   */
+  final T resolve(final Selector selector) {
+    if (this.winner != null) {
+      return this.winner;
+    } else if (this.alternates != null) {
+      return this.resolver.resolve(selector, this.alternates);
+    }
+    return this.resolver.fail(selector, this.unresolved);
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  // Mirrors Resolver#reduce(Alternate, Alternate).
+  private static final long rank(final Alternate a) {
+    return a.alternate() ? a.priority() : NON_ALTERNATE_RANK;
+  }
+
+  private static final long rank(final CompactRegistry registry, final int position) {
+    return registry.alternate(position) ? registry.priority(position) : NON_ALTERNATE_RANK;
+  }
+
+}
@@ -16,19 +16,44 @@
  */
 package org.microbean.bean;
 
-import java.lang.invoke.MethodHandles;
-import java.lang.invoke.MethodHandles.Lookup;
-import java.lang.invoke.VarHandle;
-
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Set;
 
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 import java.util.function.BiFunction;
-import java.util.function.BinaryOperator;
 
 import java.util.stream.Stream;
 
+/**
+ * Reduces a sequence of {@link Alternate}s to the single one that
+ * should be used, consulting a failure handler if that is not
+ * possible.
+ *
+ * <p>A {@link Resolver} holds no mutable state.  Any {@link
+ * Alternate}s found to be ambiguous during a resolution are tracked
+ * by that resolution alone, so a single {@link Resolver} may be
+ * shared freely among threads.</p>
+ *
+ * <p>A {@link Resolver} {@linkplain #Resolver(BiFunction, int)
+ * created with a parallel threshold} reduces {@link RandomAccess}
+ * {@link List}s at least that large in the {@linkplain
+ * ForkJoinPool#commonPool() common fork-join pool}.  The reduction is
+ * associative: each half yields its best {@link Alternate} together
+ * with those tied with it, and combining two halves keeps the
+ * preferred side, or pools both sides' ties, so exactly the same
+ * ambiguous {@link Alternate}s are reported as by a sequential
+ * reduction.</p>
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ */
 public class Resolver implements AutoCloseable {
 
 
@@ -37,16 +62,21 @@ public class Resolver implements AutoCloseable {
    */
 
 
-  private static final VarHandle UNRESOLVED;
-
-  static {
-    final Lookup lookup = MethodHandles.lookup();
-    try {
-      UNRESOLVED = lookup.findVarHandle(Resolver.class, "unresolved", ConcurrentLinkedQueue.class);
-    } catch (final NoSuchFieldException | IllegalAccessException reflectiveOperationException) {
-      throw (Error)new ExceptionInInitializerError(reflectiveOperationException.getMessage()).initCause(reflectiveOperationException);
-    }
-  }
+  // Whether a Resolver subclass inherits the standard reduce(Alternate, Alternate) method.
+  private static final ClassValue<Boolean> STANDARD = new ClassValue<>() {
+      @Override
+      protected final Boolean computeValue(final Class<?> c) {
+        for (Class<?> k = c; k != Resolver.class; k = k.getSuperclass()) {
+          try {
+            k.getDeclaredMethod("reduce", Alternate.class, Alternate.class);
+            return Boolean.FALSE;
+          } catch (final NoSuchMethodException e) {
+            // Keep looking.
+          }
+        }
+        return Boolean.TRUE;
+      }
+    };
 
 
   /*
@@ -54,10 +84,10 @@ public class Resolver implements AutoCloseable {
    */
 
 
-  private volatile ConcurrentLinkedQueue<Alternate> unresolved;
-
   private final BiFunction<? super Selector, ? super Collection<? extends Alternate>, ? extends Alternate> failureHandler;
 
+  private final int parallelThreshold;
+
 
   /*
    * Constructors.
@@ -65,12 +95,33 @@ public class Resolver implements AutoCloseable {
 
 
   public Resolver() {
-    this(Resolver::fail);
+    this(Resolver::failByThrowing);
   }
 
   public Resolver(final BiFunction<? super Selector, ? super Collection<? extends Alternate>, ? extends Alternate> failureHandler) {
+    this(failureHandler, 0);
+  }
+
+  /**
+   * Creates a new {@link Resolver}.
+   *
+   * @param failureHandler the failure handler to invoke when no single
+   * {@link Alternate} can be resolved; may be {@code null} in which
+   * case a {@link ResolutionException} will be thrown
+   *
+   * @param parallelThreshold the size at or above which {@link
+   * RandomAccess} {@link List}s of {@link Alternate}s will be reduced
+   * in parallel; if less than or equal to {@code 0} all reductions
+   * will be sequential; a {@link Resolver} that does not override the
+   * {@link #reduce(Alternate, Alternate)} method ranks the {@link
+   * Alternate}s of a {@link Beans} selection in a single sequential
+   * pass instead, and so is unaffected
+   */
+  public Resolver(final BiFunction<? super Selector, ? super Collection<? extends Alternate>, ? extends Alternate> failureHandler,
+                  final int parallelThreshold) {
     super();
-    this.failureHandler = failureHandler == null ? Resolver::fail : failureHandler;
+    this.failureHandler = failureHandler == null ? Resolver::failByThrowing : failureHandler;
+    this.parallelThreshold = parallelThreshold <= 0 ? Integer.MAX_VALUE : Math.max(2, parallelThreshold);
   }
 
 
@@ -82,79 +133,307 @@ public class Resolver implements AutoCloseable {
   public final <T extends Alternate> T resolve(final Stream<T> alternates) {
     return this.resolve(null, alternates);
   }
-  
+
   public final <T extends Alternate> T resolve(final Selector selector, final Stream<T> alternates) {
-    try (final Stream<T> s = alternates.onClose(this::clear)) {
-      return s.reduce(this::reduce).orElse(this.fail(selector));
+    try (final Stream<T> s = alternates) {
+      return this.resolve(selector, s.toList());
+    }
+  }
+
+  /**
+   * Reduces the supplied {@link List} of {@link Alternate}s to one
+   * using the {@link #reduce(Alternate, Alternate)} method in a plain
+   * indexed loop, invoking the {@link #fail(Selector, Collection)}
+   * method only if no single {@link Alternate} results.
+   *
+   * <p>No objects are allocated by this method itself when resolution
+   * succeeds sequentially.  {@link RandomAccess} {@link List}s at
+   * least as large as the {@linkplain #Resolver(BiFunction, int)
+   * parallel threshold} are reduced in the {@linkplain
+   * ForkJoinPool#commonPool() common fork-join pool}.</p>
+   *
+   * @param <T> the type of {@link Alternate}
+   *
+   * @param selector the {@link Selector} being resolved; may be {@code
+   * null}
+   *
+   * @param alternates the {@link Alternate}s to reduce; must not be
+   * {@code null}; should be {@link RandomAccess}
+   *
+   * @return the resolved {@link Alternate}, or whatever the failure
+   * handler returns
+   *
+   * @exception NullPointerException if {@code alternates} is {@code
+   * null}
+   *
+   * @exception ResolutionException if resolution fails and the
+   * failure handler throws it
+   *
+   * @threadsafety This method is safe for concurrent use by multiple
+   * threads if the {@link #reduce(Alternate, Alternate)} method is.
+   */
+  public final <T extends Alternate> T resolve(final Selector selector, final List<? extends T> alternates) {
+    final int size = alternates.size();
+    if (size == 0) {
+      return this.fail(selector, List.of());
+    } else if (size >= this.parallelThreshold && alternates instanceof RandomAccess) {
+      final Partial<T> p = ForkJoinPool.commonPool().invoke(new Reduction<T>(this, alternates, 0, size));
+      return p.ties == null && p.best != null ? p.best : this.fail(selector, p.ties == null ? List.of() : distinct(p.ties));
+    }
+    T best = alternates.get(0);
+    List<T> ties = null; // allocated only on ambiguity
+    for (int i = 1; i < size; i++) {
+      final T t = alternates.get(i);
+      final T winner = this.reduce(best, t);
+      if (winner == null) {
+        ties = tie(ties, best, t);
+      } else if (winner != best) {
+        best = winner;
+        ties = null;
+      }
     }
+    return ties == null && best != null ? best : this.fail(selector, ties == null ? List.of() : distinct(ties));
+  }
+
+  /**
+   * Reduces the supplied array of {@link Alternate}s to one using the
+   * {@link #reduce(Alternate, Alternate)} method in a plain indexed
+   * loop, invoking the {@link #fail(Selector, Collection)} method
+   * only if no single {@link Alternate} results.
+   *
+   * <p>No objects are allocated by this method itself when resolution
+   * succeeds.</p>
+   *
+   * @param <T> the type of {@link Alternate}
+   *
+   * @param selector the {@link Selector} being resolved; may be {@code
+   * null}
+   *
+   * @param alternates the {@link Alternate}s to reduce; must not be
+   * {@code null}
+   *
+   * @return the resolved {@link Alternate}, or whatever the failure
+   * handler returns
+   *
+   * @exception NullPointerException if {@code alternates} is {@code
+   * null}
+   *
+   * @exception ResolutionException if resolution fails and the
+   * failure handler throws it
+   *
+   * @threadsafety This method is safe for concurrent use by multiple
+   * threads if the {@link #reduce(Alternate, Alternate)} method is.
+   */
+  @SafeVarargs
+  public final <T extends Alternate> T resolve(final Selector selector, final T... alternates) {
+    if (alternates.length == 0) {
+      return this.fail(selector, List.of());
+    }
+    T best = alternates[0];
+    List<T> ties = null; // allocated only on ambiguity
+    for (int i = 1; i < alternates.length; i++) {
+      final T t = alternates[i];
+      final T winner = this.reduce(best, t);
+      if (winner == null) {
+        ties = tie(ties, best, t);
+      } else if (winner != best) {
+        best = winner;
+        ties = null;
+      }
+    }
+    return ties == null && best != null ? best : this.fail(selector, ties == null ? List.of() : distinct(ties));
+  }
+
+  /**
+   * Returns a {@link ResolutionPlan} for the supplied {@link List} of
+   * {@link Alternate}s that, when the {@link #reduce(Alternate,
+   * Alternate)} method has not been overridden, has already found the
+   * winner or the ambiguous {@link Alternate}s.
+   *
+   * @param <T> the type of {@link Alternate}
+   *
+   * @param alternates the {@link Alternate}s; must not be {@code
+   * null}, must not contain {@code null} elements and must not be
+   * modified afterwards
+   *
+   * @return a new {@link ResolutionPlan}; never {@code null}
+   *
+   * @exception NullPointerException if {@code alternates} is {@code
+   * null} or contains {@code null} elements
+   */
+  final <T extends Alternate> ResolutionPlan<T> plan(final List<? extends T> alternates) {
+    return this.plan(alternates, null, null);
   }
 
+  /**
+   * Returns a {@link ResolutionPlan} for the supplied {@link List} of
+   * {@link Alternate}s, reading their ranks from the supplied {@link
+   * CompactRegistry}, that, when the {@link #reduce(Alternate,
+   * Alternate)} method has not been overridden, has already found the
+   * winner or the ambiguous {@link Alternate}s.
+   *
+   * @param <T> the type of {@link Alternate}
+   *
+   * @param alternates the {@link Alternate}s; must not be {@code
+   * null}, must not contain {@code null} elements and must not be
+   * modified afterwards
+   *
+   * @param registry the {@link CompactRegistry} holding the {@link
+   * Alternate}s; may be {@code null}
+   *
+   * @param positions the positions of the {@link Alternate}s in
+   * {@code registry}; must not be {@code null} if {@code registry} is
+   * not
+   *
+   * @return a new {@link ResolutionPlan}; never {@code null}
+   *
+   * @exception NullPointerException if {@code alternates} is {@code
+   * null} or contains {@code null} elements
+   */
+  final <T extends Alternate> ResolutionPlan<T> plan(final List<? extends T> alternates,
+                                                     final CompactRegistry registry,
+                                                     final int[] positions) {
+    return new ResolutionPlan<>(this, alternates, registry, positions, STANDARD.get(this.getClass()));
+  }
+
+  /**
+   * Returns whichever of the two supplied {@link Alternate}s should
+   * be preferred, or {@code null} if neither is preferable to the
+   * other.
+   *
+   * <p>When {@code null} is returned, the resolution in progress
+   * remembers both {@link Alternate}s as ambiguous unless a later
+   * {@link Alternate} is preferred to them.</p>
+   *
+   * @param <T> the type of {@link Alternate}
+   *
+   * @param t0 the current best {@link Alternate}; may be {@code null}
+   *
+   * @param t1 the {@link Alternate} to compare it with; may be {@code
+   * null}
+   *
+   * @return the preferred {@link Alternate}, or {@code null}
+   *
+   * @threadsafety This method is, and its overrides must be, safe for
+   * concurrent use by multiple threads.
+   */
   protected <T extends Alternate> T reduce(final T t0, final T t1) {
-    final T returnValue;
     if (t0 == null || t0 == t1) {
-      returnValue = t1;
+      return t1;
     } else if (t1 == null) {
-      returnValue = t0;
+      return t0;
     } else if (t0.alternate()) {
       if (t1.alternate()) {
         final int t0Priority = t0.priority();
         final int t1Priority = t1.priority();
         if (t0Priority == t1Priority) {
-          returnValue = null;
-        } else if (t0Priority < t1Priority) {
-          returnValue = t1;
-        } else {
-          returnValue = t0;
+          return null;
         }
-      } else {
-        returnValue = t1;
+        return t0Priority < t1Priority ? t1 : t0;
       }
-    } else {
-      returnValue = t1.alternate() ? t0 : null;
+      return t1;
     }
-    if (returnValue == null) {
-      this.addUnresolved(t0, t1);
-    }
-    return returnValue;
+    return t1.alternate() ? t0 : null;
   }
 
-  protected <T extends Alternate> void addUnresolved(final T unresolved1, final T unresolved2) {
-    final Collection<Alternate> q = this.unresolved();
-    q.add(unresolved1);
-    q.add(unresolved2);
+  /**
+   * Invokes the failure handler {@linkplain #Resolver(BiFunction)
+   * supplied at construction time} with the supplied {@link Selector}
+   * and {@link Collection} of ambiguous {@link Alternate}s and
+   * returns its result or, if the {@link Collection} is empty,
+   * returns the result of invoking the deprecated {@link
+   * #fail(Selector)} method, so that subclasses overriding it keep
+   * handling unsatisfied resolutions.
+   *
+   * @param <T> the type of {@link Alternate}
+   *
+   * @param selector the {@link Selector} being resolved; may be {@code
+   * null}
+   *
+   * @param unresolved the {@link Alternate}s that could not be
+   * reduced to one; must not be {@code null}; empty if there were no
+   * {@link Alternate}s at all
+   *
+   * @return the result of the failure handler
+   *
+   * @exception ResolutionException if the failure handler throws it
+   */
+  @SuppressWarnings("unchecked")
+  protected <T extends Alternate> T fail(final Selector selector, final Collection<? extends Alternate> unresolved) {
+    return unresolved.isEmpty() ? this.fail(selector) : (T)this.failureHandler.apply(selector, unresolved);
   }
 
+  /**
+   * Invokes the failure handler {@linkplain #Resolver(BiFunction)
+   * supplied at construction time} with the supplied {@link Selector}
+   * and an empty {@link Collection} and returns its result.
+   *
+   * <p>The {@link #fail(Selector, Collection)} method invokes this
+   * method whenever there were no {@link Alternate}s at all.</p>
+   *
+   * @param <T> the type of {@link Alternate}
+   *
+   * @param selector the {@link Selector} being resolved; may be {@code
+   * null}
+   *
+   * @return the result of the failure handler
+   *
+   * @exception ResolutionException if the failure handler throws it
+   *
+   * @deprecated A {@link Resolver} no longer accumulates unresolved
+   * {@link Alternate}s between calls; please use the {@link
+   * #fail(Selector, Collection)} method instead.
+   */
+  @Deprecated
   @SuppressWarnings("unchecked")
   protected <T extends Alternate> T fail(final Selector selector) {
-    final Collection<? extends Alternate> unresolved = this.unresolved; // volatile read
-    try {
-      return (T)this.failureHandler.apply(selector, unresolved);
-    } finally {
-      this.clear();
-    }
+    return (T)this.failureHandler.apply(selector, List.of());
   }
 
-  @Override // AutoCloseable
-  public final void close() {
-    this.clear();
+  /**
+   * Does nothing.
+   *
+   * <p>The resolution in progress records ties itself whenever the
+   * {@link #reduce(Alternate, Alternate)} method returns {@code
+   * null}.</p>
+   *
+   * @param <T> the type of {@link Alternate}
+   *
+   * @param unresolved1 an {@link Alternate}; ignored
+   *
+   * @param unresolved2 an {@link Alternate}; ignored
+   *
+   * @deprecated A {@link Resolver} no longer accumulates unresolved
+   * {@link Alternate}s between calls; overrides of the {@link
+   * #reduce(Alternate, Alternate)} method need only return {@code
+   * null}.
+   */
+  @Deprecated
+  protected <T extends Alternate> void addUnresolved(final T unresolved1, final T unresolved2) {
+
   }
 
+  /**
+   * Does nothing.
+   *
+   * @deprecated A {@link Resolver} no longer accumulates unresolved
+   * {@link Alternate}s between calls, so there is nothing to clear.
+   */
+  @Deprecated
   protected void clear() {
-    final Collection<?> c = this.unresolved; // volatile read
-    if (c != null) {
-      c.clear();
-    }
+
   }
 
-  private final ConcurrentLinkedQueue<Alternate> unresolved() {
-    ConcurrentLinkedQueue<Alternate> q = this.unresolved; // volatile read
-    if (q == null) {
-      q = new ConcurrentLinkedQueue<>();
-      if (!UNRESOLVED.compareAndSet(this, null, q)) { // volatile write
-        return this.unresolved; // volatile read
-      }
-    }
-    return q;
+  /**
+   * Invokes the {@link #clear()} method.
+   *
+   * <p>A {@link Resolver} holds no state between resolutions, so
+   * unless a subclass overrides {@link #clear()} this has no
+   * effect.</p>
+   */
+  @Override // AutoCloseable
+  public final void close() {
+    this.clear();
   }
 
 
@@ -163,12 +442,98 @@ public class Resolver implements AutoCloseable {
    */
 
 
-  private static final Alternate fail(final Selector s, final Collection<? extends Alternate> u) {
+  // The two Lists come from disjoint ranges of positions, so neither
+  // contains an element of the other by position.
+  private static final <T> List<T> tie(final List<T> ties0, final List<T> ties1) {
+    final List<T> ties = new ArrayList<>(ties0.size() + ties1.size());
+    ties.addAll(ties0);
+    ties.addAll(ties1);
+    return ties;
+  }
+
+  // t0 is the best Alternate so far.  Whenever ties is non-null it
+  // already holds t0, since ties is discarded whenever the best
+  // Alternate changes, and t1 comes from a position not yet visited.
+  private static final <T> List<T> tie(List<T> ties, final T t0, final T t1) {
+    if (ties == null) {
+      ties = new ArrayList<>(4);
+      ties.add(t0);
+    }
+    ties.add(t1);
+    return ties;
+  }
+
+  // Removes all but the first of any identical elements, which arise
+  // only when the same Alternate occupies more than one position.
+  private static final <T> List<T> distinct(final List<T> ties) {
+    final int size = ties.size();
+    if (size <= 1) {
+      return ties;
+    }
+    final Set<T> seen = Collections.newSetFromMap(new IdentityHashMap<>(size * 4 / 3 + 1));
+    final List<T> distinct = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      final T t = ties.get(i);
+      if (seen.add(t)) {
+        distinct.add(t);
+      }
+    }
+    return distinct.size() == size ? ties : distinct;
+  }
+
+  private static final Alternate failByThrowing(final Selector s, final Collection<? extends Alternate> u) {
     if (u == null || u.isEmpty()) {
-      throw new UnsatisfiedResolutionException(s, "TODO: unsatisfied");
+      // The message is formatted lazily from the Selector.
+      throw new UnsatisfiedResolutionException(s, (String)null);
     } else {
-      throw new AmbiguousResolutionException(s, u, "TODO: this message needs to be better; can't resolve these alternates: " + u);
+      // The message is formatted lazily from the alternates.
+      throw new AmbiguousResolutionException(s, u, (String)null);
+    }
+  }
+
+  /**
+   * Throws a {@link ResolutionException} that has no stack trace and
+   * whose message, if any, is formatted only on demand: an {@link
+   * UnsatisfiedResolutionException} if the supplied {@link
+   * Collection} of unresolved {@link Alternate}s is {@code null} or
+   * {@linkplain Collection#isEmpty() empty}, and an {@link
+   * AmbiguousResolutionException} otherwise.
+   *
+   * <p>Capturing a stack trace usually dominates the cost of throwing
+   * an exception.  This method is suitable for callers that routinely
+   * expect resolution to fail, and for callers such as {@link Beans}
+   * that cache a failed outcome of resolution and invoke the failure
+   * handler again on every subsequent request for it.</p>
+   *
+   * <p>This method exists only so it can be referenced in {@linkplain
+   * #Resolver(BiFunction) constructor as a
+   * <code>failureHandler</code>}.  It is not used by this class.</p>
+   *
+   * @param s a {@link Selector}; may be {@code null}
+   *
+   * @param u a {@link Collection} of unresolved {@link Alternate}s;
+   * may be {@code null}
+   *
+   * @return nothing; this method always throws
+   *
+   * @exception UnsatisfiedResolutionException if {@code u} is {@code
+   * null} or {@linkplain Collection#isEmpty() empty}
+   *
+   * @exception AmbiguousResolutionException if {@code u} is
+   * non-{@code null} and {@linkplain Collection#isEmpty() non-empty}
+   *
+   * @idempotency This method is idempotent and deterministic.
+   *
+   * @threadsafety This method is safe for concurrent use by multiple
+   * threads.
+   *
+   * @see #returnNullWithoutStackTrace(Selector, Collection)
+   */
+  public static final Alternate failWithoutStackTrace(final Selector s, final Collection<? extends Alternate> u) {
+    if (u == null || u.isEmpty()) {
+      throw new UnsatisfiedResolutionException(s, null, null, false, false);
     }
+    throw new AmbiguousResolutionException(s, u, null, null, false, false);
   }
 
   /**
@@ -204,7 +569,124 @@ public class Resolver implements AutoCloseable {
    * threads.
    */
   public static final Alternate returnNull(final Selector s, final Collection<? extends Alternate> u) {
-    return u == null || u.isEmpty() ? null : fail(s, u);
+    return u == null || u.isEmpty() ? null : failByThrowing(s, u);
+  }
+
+  /**
+   * If the supplied {@link Collection} of unresolved {@link
+   * Alternate}s is {@code null} or {@linkplain Collection#isEmpty()
+   * empty}, returns {@code null}; otherwise behaves as the {@link
+   * #failWithoutStackTrace(Selector, Collection)} method does.
+   *
+   * <p>This method exists only so it can be referenced in {@linkplain
+   * #Resolver(BiFunction) constructor as a
+   * <code>failureHandler</code>}.  It is not used by this class.</p>
+   *
+   * @param s a {@link Selector}; may be {@code null}
+   *
+   * @param u a {@link Collection} of unresolved {@link Alternate}s;
+   * may be {@code null} or {@linkplain Collection#isEmpty() empty} in
+   * which case {@code null} will be returned
+   *
+   * @return {@code null}
+   *
+   * @exception AmbiguousResolutionException if {@code u} is
+   * non-{@code null} and {@linkplain Collection#isEmpty() non-empty};
+   * it will have no stack trace
+   *
+   * @nullability This method returns {@code null}.
+   *
+   * @idempotency This method is idempotent and deterministic.
+   *
+   * @threadsafety This method is safe for concurrent use by multiple
+   * threads.
+   *
+   * @see #returnNull(Selector, Collection)
+   */
+  public static final Alternate returnNullWithoutStackTrace(final Selector s, final Collection<? extends Alternate> u) {
+    return u == null || u.isEmpty() ? null : failWithoutStackTrace(s, u);
+  }
+
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  // The best Alternate of a range, and, if it is ambiguous, every
+  // Alternate in the range tied with it (including itself).
+  private static final class Partial<T> {
+
+    private final T best;
+
+    private final List<T> ties;
+
+    private Partial(final T best, final List<T> ties) {
+      super();
+      this.best = best;
+      this.ties = ties;
+    }
+
+  }
+
+  private static final class Reduction<T extends Alternate> extends RecursiveTask<Partial<T>> {
+
+    private static final long serialVersionUID = 1L;
+
+    // Ranges no larger than this are reduced sequentially.
+    private static final int LEAF_SIZE = 1024;
+
+    private final transient Resolver resolver;
+
+    private final transient List<? extends T> alternates;
+
+    private final int from;
+
+    private final int to;
+
+    private Reduction(final Resolver resolver, final List<? extends T> alternates, final int from, final int to) {
+      super();
+      this.resolver = resolver;
+      this.alternates = alternates;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override // RecursiveTask<Partial<T>>
+    protected final Partial<T> compute() {
+      if (this.to - this.from <= LEAF_SIZE) {
+        T best = this.alternates.get(this.from);
+        List<T> ties = null;
+        for (int i = this.from + 1; i < this.to; i++) {
+          final T t = this.alternates.get(i);
+          final T winner = this.resolver.reduce(best, t);
+          if (winner == null) {
+            ties = tie(ties, best, t);
+          } else if (winner != best) {
+            best = winner;
+            ties = null;
+          }
+        }
+        return new Partial<>(best, ties);
+      }
+      final int middle = (this.from + this.to) >>> 1;
+      final Reduction<T> left = new Reduction<T>(this.resolver, this.alternates, this.from, middle);
+      left.fork();
+      final Partial<T> right = new Reduction<T>(this.resolver, this.alternates, middle, this.to).compute();
+      return this.combine(left.join(), right);
+    }
+
+    private final Partial<T> combine(final Partial<T> left, final Partial<T> right) {
+      final T winner = this.resolver.reduce(left.best, right.best);
+      if (winner == null) {
+        final List<T> leftTies = left.ties == null ? List.of(left.best) : left.ties;
+        final List<T> rightTies = right.ties == null ? List.of(right.best) : right.ties;
+        return new Partial<>(left.best, tie(leftTies, rightTies));
+      }
+      return winner == left.best ? left : winner == right.best ? right : new Partial<>(winner, null);
+    }
+
   }
 
 }
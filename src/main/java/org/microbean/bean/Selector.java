@@ -76,6 +76,40 @@ public final record Selector(Qualified<?, ? extends Type<?>> qualifiedType, Inte
 
   public static final Qualifiers<?> ANY_AND_DEFAULT_QUALIFIERS = Qualifiers.ofDisparate(List.of(ANY_QUALIFIER, DEFAULT_QUALIFIER));
 
+  private static final Interner<Selector> INTERNER = new Interner<>();
+
+  // Conversions of Classes to Types, which live as long as the Classes
+  // do.
+  private static final ClassValue<Type<?>> CLASS_TYPES = new ClassValue<>() {
+      @Override
+      protected final Type<?> computeValue(final Class<?> c) {
+        return JavaType.of(c);
+      }
+    };
+
+  // Selectors for the common raw Class cases, indexed by the
+  // *_SELECTOR constants below, which live as long as the Classes do.
+  // They are deliberately not interned, since the Interner would keep
+  // them, and so their Classes, reachable forever; the ClassValue
+  // alone already makes each of them canonical for its Class.
+  private static final ClassValue<Selector[]> RAW_SELECTORS = new ClassValue<>() {
+      @Override
+      protected final Selector[] computeValue(final Class<?> c) {
+        final Type<?> type = CLASS_TYPES.get(c);
+        return new Selector[] {
+          of(Qualified.of(ANY_QUALIFIERS, type)),
+          of(Qualified.of(DEFAULT_QUALIFIERS, type)),
+          of(Qualified.of(ANY_AND_DEFAULT_QUALIFIERS, type))
+        };
+      }
+    };
+
+  private static final int ANY_SELECTOR = 0;
+
+  private static final int DEFAULT_SELECTOR = 1;
+
+  private static final int ANY_AND_DEFAULT_SELECTOR = 2;
+
 
   /*
    * Constructors.
@@ -142,7 +176,7 @@ public final record Selector(Qualified<?, ? extends Type<?>> qualifiedType, Inte
   }
 
   public final boolean selects(final Type<?> type) {
-    return type != null && Type.CdiSemantics.INSTANCE.assignable(this.qualifiedType().qualified(), type);
+    return type != null && Assignability.assignable(this.qualifiedType().qualified(), type);
   }
 
   public final boolean selects(final InterceptorBindings<?> interceptorBindings) {
@@ -156,6 +190,31 @@ public final record Selector(Qualified<?, ? extends Type<?>> qualifiedType, Inte
     }
   }
 
+  /**
+   * Returns the canonical {@link Selector} {@linkplain
+   * #equals(Object) equal to} this one.
+   *
+   * <p>Equal {@link Selector}s that have been interned are identical,
+   * so they may be compared, and found in caches such as those of
+   * {@link Beans}, by identity alone.  Interned {@link Selector}s are
+   * retained for the life of the virtual machine, so only {@link
+   * Selector}s drawn from a bounded set, such as those describing
+   * injection points, should be interned.</p>
+   *
+   * @return the canonical {@link Selector} equal to this one; never
+   * {@code null}
+   *
+   * @nullability This method never returns {@code null}.
+   *
+   * @idempotency This method is idempotent and deterministic.
+   *
+   * @threadsafety This method is safe for concurrent use by multiple
+   * threads.
+   */
+  public final Selector intern() {
+    return INTERNER.intern(this);
+  }
+
   @Convenience
   public final Selector with(final Type<?> type) {
     return this.with(Qualified.of(this.qualifiedType().qualifiers(), type));
@@ -206,15 +265,15 @@ public final record Selector(Qualified<?, ? extends Type<?>> qualifiedType, Inte
 
 
   public static final Selector ofAny(final java.lang.reflect.Type type) {
-    return of(ANY_QUALIFIERS, type);
+    return type instanceof Class<?> c ? RAW_SELECTORS.get(c)[ANY_SELECTOR] : of(ANY_QUALIFIERS, type);
   }
 
   public static final Selector ofDefault(final java.lang.reflect.Type type) {
-    return of(DEFAULT_QUALIFIERS, type);
+    return type instanceof Class<?> c ? RAW_SELECTORS.get(c)[DEFAULT_SELECTOR] : of(DEFAULT_QUALIFIERS, type);
   }
 
   public static final Selector ofAnyAndDefault(final java.lang.reflect.Type type) {
-    return of(ANY_AND_DEFAULT_QUALIFIERS, type);
+    return type instanceof Class<?> c ? RAW_SELECTORS.get(c)[ANY_AND_DEFAULT_SELECTOR] : of(ANY_AND_DEFAULT_QUALIFIERS, type);
   }
 
   public static final Selector ofAny(final Type<?> type) {
@@ -230,7 +289,7 @@ public final record Selector(Qualified<?, ? extends Type<?>> qualifiedType, Inte
   }
 
   public static final Selector of(final Qualifiers<?> qualifiers, final java.lang.reflect.Type type) {
-    return of(qualifiers, JavaType.of(type));
+    return of(qualifiers, type(type));
   }
 
   public static final Selector of(final Qualifiers<?> qualifiers, final Type<?> type) {
@@ -247,6 +306,14 @@ public final record Selector(Qualified<?, ? extends Type<?>> qualifiedType, Inte
     return new Selector(qualifiedType, interceptorBindings);
   }
 
+  // Converts a reflective type to a Type, reusing earlier conversions
+  // of Classes.  Other reflective types (parameterized types, generic
+  // array types, and so on) are converted afresh, since any static
+  // cache of them would keep the Classes they mention reachable.
+  private static final Type<?> type(final java.lang.reflect.Type type) {
+    return type instanceof Class<?> c ? CLASS_TYPES.get(c) : JavaType.of(type);
+  }
+
   private static final boolean containsAll(final Predicate<? super Object> p, final Iterable<?> i) {
     if (p == null || i == null) {
       return false;
@@ -0,0 +1,375 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2022 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.bean;
+
+import java.io.Serializable;
+
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.ParameterizedType;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.microbean.qualifier.Qualifiers;
+
+import org.microbean.type.Type;
+
+import static org.microbean.bean.Selector.ANY_QUALIFIER;
+
+/**
+ * An immutable index of {@link Bean}s, identified by their positions
+ * in a {@link List}, keyed by the erasures of every type in the
+ * closure of each {@link Bean}'s type.
+ *
+ * <p>For any {@link Selector}, the candidates returned by this
+ * index are a superset of the {@link Bean}s the {@link Selector}
+ * {@linkplain Selector#selects(Bean) selects}, so a caller need only
+ * test those candidates rather than every {@link Bean}.</p>
+ *
+ * @author <a href="https://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see Beans
+ */
+final class TypeIndex {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  private static final int[] EMPTY = new int[0];
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  private final int[] all;
+
+  private final int[] any;
+
+  private final Map<Class<?>, int[]> candidates;
+
+  private final Map<Class<?>, int[]> anyCandidates;
+
+  private final BitSet unindexed;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  TypeIndex(final List<? extends Bean<?>> beans) {
+    super();
+    final int size = beans.size();
+    final Map<Class<?>, Set<Class<?>>> closures = new HashMap<>();
+    final Map<Class<?>, Ordinals> candidates = new HashMap<>();
+    final Map<Class<?>, Ordinals> anyCandidates = new HashMap<>();
+    final Ordinals all = new Ordinals(size);
+    final Ordinals any = new Ordinals(size);
+    final Ordinals unindexedAll = new Ordinals();
+    final Ordinals unindexedAny = new Ordinals();
+    this.unindexed = new BitSet(size);
+    for (int i = 0; i < size; i++) {
+      final Selector selector = beans.get(i).id().selector();
+      final boolean anySelectable = anySelectable(selector.qualifiedType().qualifiers());
+      all.add(i);
+      if (anySelectable) {
+        any.add(i);
+      }
+      final Class<?> rawErasure = erasure(selector.qualifiedType().qualified());
+      final Class<?> erasure = key(rawErasure);
+      if (erasure == null) {
+        this.unindexed.set(i);
+        unindexedAll.add(i);
+        if (anySelectable) {
+          unindexedAny.add(i);
+        }
+      } else {
+        if (rawErasure.isPrimitive()) {
+          // Boxing is left entirely to the Selector.
+          this.unindexed.set(i);
+        }
+        for (final Class<?> c : closure(erasure, closures)) {
+          candidates.computeIfAbsent(c, x -> new Ordinals()).add(i);
+          if (anySelectable) {
+            anyCandidates.computeIfAbsent(c, x -> new Ordinals()).add(i);
+          }
+        }
+      }
+    }
+    this.all = all.toArray();
+    this.any = any.toArray();
+    this.candidates = freeze(candidates, unindexedAll.toArray());
+    this.anyCandidates = freeze(anyCandidates, unindexedAny.toArray());
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns an array of the ascending positions of {@link Bean}s that
+   * might be {@linkplain Selector#selects(Bean) selected by} the
+   * supplied {@link Selector}.
+   *
+   * @param s the {@link Selector}; must not be {@code null}
+   *
+   * @return an array of candidate positions; never {@code null}; must
+   * not be modified
+   *
+   * @exception NullPointerException if {@code s} is {@code null}
+   */
+  final int[] candidates(final Selector s) {
+    final boolean any = any(s);
+    final Class<?> erasure = key(requiredErasure(s.qualifiedType().qualified()));
+    if (erasure == null || erasure == Object.class) {
+      return any ? this.any : this.all;
+    }
+    final Map<Class<?>, int[]> map = any ? this.anyCandidates : this.candidates;
+    final int[] candidates = map.get(erasure);
+    return candidates == null ? map.get(null) : candidates;
+  }
+
+  /**
+   * Returns {@code true} if every indexed {@linkplain
+   * #candidates(Selector) candidate} for the supplied {@link Selector}
+   * is known to be {@linkplain Selector#selects(Bean) selected by}
+   * it, such that only {@linkplain #indexed(int) unindexed}
+   * candidates need further testing.
+   *
+   * <p>This is the case when the {@link Selector} is {@linkplain
+   * #any(Selector) <code>ANY</code>-qualified}, has no interceptor
+   * bindings, and requires a non-generic, non-array, non-primitive
+   * class.</p>
+   *
+   * @param s the {@link Selector}; must not be {@code null}
+   *
+   * @return {@code true} if indexed candidates need no further
+   * testing
+   *
+   * @exception NullPointerException if {@code s} is {@code null}
+   */
+  final boolean exact(final Selector s) {
+    if (s.interceptorBindings() == null && any(s)) {
+      final Type<?> type = s.qualifiedType().qualified();
+      return
+        type != null &&
+        type.object() instanceof Class<?> c &&
+        !c.isPrimitive() &&
+        !c.isArray() &&
+        c.getTypeParameters().length == 0;
+    }
+    return false;
+  }
+
+  /**
+   * Returns {@code true} if the {@link Bean} at the supplied position
+   * was indexed exactly by the erasure of its (non-primitive) type.
+   *
+   * @param position the position of the {@link Bean}
+   *
+   * @return {@code true} if the {@link Bean} at the supplied position
+   * was indexed exactly by the erasure of its type
+   */
+  final boolean indexed(final int position) {
+    return !this.unindexed.get(position);
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Returns {@code true} if the supplied {@link Selector} selects
+   * exactly the {@link Selector#ANY_QUALIFIER ANY} qualifier.
+   *
+   * @param s the {@link Selector}; must not be {@code null}
+   *
+   * @return {@code true} if the supplied {@link Selector} selects
+   * exactly the {@link Selector#ANY_QUALIFIER ANY} qualifier
+   *
+   * @exception NullPointerException if {@code s} is {@code null}
+   */
+  static final boolean any(final Selector s) {
+    final Qualifiers<?> qualifiers = s.qualifiedType().qualifiers();
+    return qualifiers != null && qualifiers.size() == 1 && qualifiers.contains(ANY_QUALIFIER);
+  }
+
+  // Mirrors Selector#selects(Qualifiers) for a Selector whose qualifiers are Selector.ANY_QUALIFIERS.
+  private static final boolean anySelectable(final Qualifiers<?> beanQualifiers) {
+    return beanQualifiers == null || beanQualifiers.isEmpty() || beanQualifiers.contains(ANY_QUALIFIER);
+  }
+
+  // Returns the erasure of a bean type, or null if it cannot be indexed.
+  static final Class<?> erasure(final Type<?> type) {
+    return type != null && type.object() instanceof java.lang.reflect.Type t ? erasure(t) : null;
+  }
+
+  // Returns the erasure of a required type, or null if it cannot be used to narrow candidates.
+  private static final Class<?> requiredErasure(final Type<?> type) {
+    final Class<?> erasure = erasure(type);
+    // Array assignability rules are left entirely to the Selector.
+    return erasure == null || erasure.isArray() ? null : erasure;
+  }
+
+  private static final Class<?> erasure(final java.lang.reflect.Type t) {
+    if (t instanceof Class<?> c) {
+      return c;
+    } else if (t instanceof ParameterizedType p) {
+      return erasure(p.getRawType());
+    } else if (t instanceof GenericArrayType g) {
+      final Class<?> componentErasure = erasure(g.getGenericComponentType());
+      return componentErasure == null ? null : componentErasure.arrayType();
+    } else {
+      // Type variables and wildcards cannot be indexed.
+      return null;
+    }
+  }
+
+  private static final Class<?> key(final Class<?> c) {
+    if (c == null || !c.isPrimitive()) {
+      return c;
+    } else if (c == void.class) {
+      return null;
+    }
+    return box(c);
+  }
+
+  private static final Class<?> box(final Class<?> c) {
+    if (c == boolean.class) {
+      return Boolean.class;
+    } else if (c == byte.class) {
+      return Byte.class;
+    } else if (c == char.class) {
+      return Character.class;
+    } else if (c == double.class) {
+      return Double.class;
+    } else if (c == float.class) {
+      return Float.class;
+    } else if (c == int.class) {
+      return Integer.class;
+    } else if (c == long.class) {
+      return Long.class;
+    } else {
+      return Short.class;
+    }
+  }
+
+  private static final Set<Class<?>> closure(final Class<?> c, final Map<Class<?>, Set<Class<?>>> closures) {
+    Set<Class<?>> closure = closures.get(c);
+    if (closure == null) {
+      closure = new LinkedHashSet<>();
+      closure.add(c);
+      if (c.isArray()) {
+        closure.add(Cloneable.class);
+        closure.add(Serializable.class);
+      } else {
+        final Class<?> superclass = c.getSuperclass();
+        if (superclass != null) {
+          closure.addAll(closure(superclass, closures));
+        }
+        for (final Class<?> i : c.getInterfaces()) {
+          closure.addAll(closure(i, closures));
+        }
+      }
+      closure.add(Object.class);
+      closures.put(c, closure);
+    }
+    return closure;
+  }
+
+  private static final Map<Class<?>, int[]> freeze(final Map<Class<?>, Ordinals> map, final int[] unindexed) {
+    final Map<Class<?>, int[]> frozen = new HashMap<>(map.size() * 4 / 3 + 2);
+    for (final Map.Entry<Class<?>, Ordinals> e : map.entrySet()) {
+      frozen.put(e.getKey(), merge(e.getValue().toArray(), unindexed));
+    }
+    // The null key holds the candidates for a class that no indexed Bean is assignable to.
+    frozen.put(null, unindexed);
+    return frozen;
+  }
+
+  private static final int[] merge(final int[] a, final int[] b) {
+    if (b.length == 0) {
+      return a;
+    } else if (a.length == 0) {
+      return b;
+    }
+    final int[] merged = new int[a.length + b.length];
+    int i = 0;
+    int j = 0;
+    int k = 0;
+    while (i < a.length && j < b.length) {
+      merged[k++] = a[i] < b[j] ? a[i++] : b[j++];
+    }
+    while (i < a.length) {
+      merged[k++] = a[i++];
+    }
+    while (j < b.length) {
+      merged[k++] = b[j++];
+    }
+    return merged;
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  private static final class Ordinals {
+
+    private int[] ordinals;
+
+    private int size;
+
+    private Ordinals() {
+      this(4);
+    }
+
+    private Ordinals(final int initialCapacity) {
+      super();
+      this.ordinals = initialCapacity <= 0 ? EMPTY : new int[initialCapacity];
+    }
+
+    private final void add(final int ordinal) {
+      if (this.size == this.ordinals.length) {
+        this.ordinals = Arrays.copyOf(this.ordinals, Math.max(4, this.size * 2));
+      }
+      this.ordinals[this.size++] = ordinal;
+    }
+
+    private final int[] toArray() {
+      return this.size == 0 ? EMPTY : Arrays.copyOf(this.ordinals, this.size);
+    }
+
+  }
+
+}
@@ -53,4 +53,26 @@ public class UnsatisfiedResolutionException extends ResolutionException {
     super(selector, message, cause);
   }
 
+  protected UnsatisfiedResolutionException(final Selector selector,
+                                           final String message,
+                                           final Throwable cause,
+                                           final boolean enableSuppression,
+                                           final boolean writableStackTrace) {
+    super(selector, message, cause, enableSuppression, writableStackTrace);
+  }
+
+  @Override // Throwable
+  public String getMessage() {
+    final String message = super.getMessage();
+    if (message == null) {
+      final Selector selector = this.selector();
+      if (selector != null) {
+        // Formatted only on demand, like the message of an
+        // AmbiguousResolutionException.
+        return "no beans are selected by " + selector;
+      }
+    }
+    return message;
+  }
+
 }
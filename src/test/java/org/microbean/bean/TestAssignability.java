@@ -0,0 +1,110 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2022 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.bean;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+import java.lang.ref.WeakReference;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import org.microbean.type.JavaType;
+import org.microbean.type.Type;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+final class TestAssignability {
+
+  private TestAssignability() {
+    super();
+  }
+
+  @Test
+  final void testMemoizedResultsMatchDirectComputation() {
+    final List<Type<?>> types =
+      List.of(JavaType.of(Object.class),
+              JavaType.of(CharSequence.class),
+              JavaType.of(String.class),
+              JavaType.of(Number.class),
+              JavaType.of(Integer.class));
+    for (int pass = 0; pass < 2; pass++) {
+      final long hits = Assignability.statistics().hits();
+      for (final Type<?> required : types) {
+        for (final Type<?> beanType : types) {
+          assertEquals(Type.CdiSemantics.INSTANCE.assignable(required, beanType), Assignability.assignable(required, beanType));
+        }
+      }
+      if (pass == 1) {
+        // Other tests may share the memo, so only a lower bound holds.
+        assertTrue(Assignability.statistics().hits() > hits);
+      }
+    }
+  }
+
+  @Test
+  final void testMemoDoesNotRetainTypes() throws InterruptedException {
+    final WeakReference<ClassLoader> loader = memoizeEphemeralClass();
+    for (int i = 0; i < 50 && loader.get() != null; i++) {
+      System.gc();
+      Thread.sleep(20L);
+    }
+    assertNull(loader.get());
+  }
+
+  // Memoizes a pair involving a class defined by a throwaway
+  // ClassLoader and returns a weak reference to that ClassLoader.
+  private static final WeakReference<ClassLoader> memoizeEphemeralClass() {
+    final EphemeralLoader loader = new EphemeralLoader();
+    final Type<?> ephemeral = JavaType.of(loader.define(Ephemeral.class));
+    Assignability.assignable(JavaType.of(Object.class), ephemeral);
+    return new WeakReference<>(loader);
+  }
+
+  // Defined again, by an EphemeralLoader, under the same name.
+  private static final class Ephemeral {
+
+    private Ephemeral() {
+      super();
+    }
+
+  }
+
+  private static final class EphemeralLoader extends ClassLoader {
+
+    private EphemeralLoader() {
+      super(null);
+    }
+
+    private final Class<?> define(final Class<?> c) {
+      final String name = c.getName();
+      try (final InputStream is = c.getResourceAsStream(name.substring(name.lastIndexOf('.') + 1) + ".class")) {
+        final byte[] bytes = is.readAllBytes();
+        return this.defineClass(name, bytes, 0, bytes.length);
+      } catch (final IOException e) {
+        throw new UncheckedIOException(e.getMessage(), e);
+      }
+    }
+
+  }
+
+}
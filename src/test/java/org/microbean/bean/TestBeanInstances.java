@@ -0,0 +1,221 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2022 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.bean;
+
+import java.lang.ref.WeakReference;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+import org.microbean.qualifier.Qualifier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import static org.microbean.scope.Scope.SINGLETON;
+
+final class TestBeanInstances {
+
+  private TestBeanInstances() {
+    super();
+  }
+
+  @Test
+  final void testInstancesAreCreatedOnceAndStoredByOrdinal() {
+    final AtomicInteger creations = new AtomicInteger();
+    final List<Bean<?>> list = new ArrayList<>();
+    // Enough Beans to span several chunks.
+    for (int i = 0; i < 200; i++) {
+      final Factory<Object> factory = c -> {
+        creations.incrementAndGet();
+        return new Object();
+      };
+      list.add(Bean.of(factory, Id.of(Selector.ofAny(Object.class), SINGLETON.id())));
+    }
+    final Beans beans = new Beans(list);
+    final BeanInstances instances = new BeanInstances(beans);
+    for (final Bean<?> bean : list) {
+      assertNull(instances.findInstance(bean));
+      final Object instance = instances.supplyInstance(null, bean);
+      assertSame(instance, instances.findInstance(bean));
+      assertSame(instance, instances.supplyInstance(null, bean));
+    }
+    assertEquals(list.size(), creations.get());
+  }
+
+  @Test
+  final void testConcurrentRequestsShareOneCreation() throws Exception {
+    final AtomicInteger creations = new AtomicInteger();
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final Factory<Object> factory = c -> {
+      creations.incrementAndGet();
+      started.countDown();
+      try {
+        release.await();
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return new Object();
+    };
+    final Bean<Object> bean = Bean.of(factory, Id.of(Selector.ofAny(Object.class), SINGLETON.id()));
+    final BeanInstances instances = new BeanInstances(new Beans(List.of(bean)));
+    final ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      final List<Future<Object>> futures = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        futures.add(executor.submit(() -> instances.supplyInstance(null, bean)));
+      }
+      started.await();
+      release.countDown();
+      final Object instance = futures.get(0).get();
+      for (final Future<Object> future : futures) {
+        assertSame(instance, future.get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals(1, creations.get());
+  }
+
+  @Test
+  final void testFailureReleasesWaitersAndAllowsRetry() throws Exception {
+    final AtomicInteger creations = new AtomicInteger();
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final Factory<Object> factory = c -> {
+      if (creations.incrementAndGet() == 1) {
+        started.countDown();
+        try {
+          release.await();
+        } catch (final InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        throw new IllegalStateException("first");
+      }
+      return "second";
+    };
+    final Bean<Object> bean = Bean.of(factory, Id.of(Selector.ofAny(Object.class), SINGLETON.id()));
+    final BeanInstances instances = new BeanInstances(new Beans(List.of(bean)));
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      final Future<Object> creator = executor.submit(() -> instances.supplyInstance(null, bean));
+      started.await();
+      final List<Future<Object>> waiters = new ArrayList<>();
+      for (int i = 0; i < 3; i++) {
+        waiters.add(executor.submit(() -> instances.supplyInstance(null, bean)));
+      }
+      release.countDown();
+      assertThrows(ExecutionException.class, creator::get);
+      for (final Future<Object> waiter : waiters) {
+        try {
+          // A waiter either received the failure or, having arrived
+          // after it, retried.
+          assertEquals("second", waiter.get());
+        } catch (final ExecutionException e) {
+          assertEquals("first", e.getCause().getMessage());
+        }
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals("second", instances.supplyInstance(null, bean));
+    assertEquals(2, creations.get());
+  }
+
+  @Test
+  final void testCircularCreation() {
+    final AtomicReference<BeanInstances> instances = new AtomicReference<>();
+    final AtomicReference<Bean<Object>> bean = new AtomicReference<>();
+    final Factory<Object> factory = c -> instances.get().supplyInstance(null, bean.get());
+    bean.set(Bean.of(factory, Id.of(Selector.ofAny(Object.class), SINGLETON.id())));
+    instances.set(new BeanInstances(new Beans(List.of(bean.get()))));
+    final IllegalStateException e =
+      assertThrows(IllegalStateException.class, () -> instances.get().supplyInstance(null, bean.get()));
+    assertTrue(e.getMessage().startsWith("circular creation"));
+    // The failure is not stored.
+    assertNull(instances.get().findInstance(bean.get()));
+  }
+
+  @Test
+  final void testBeansOfOtherScopesAreNotStored() {
+    final AtomicInteger creations = new AtomicInteger();
+    final Factory<Object> factory = c -> {
+      creations.incrementAndGet();
+      return new Object();
+    };
+    final Bean<Object> bean = Bean.of(factory, Id.of(Selector.ofAny(Object.class), Qualifier.of("prototype")));
+    final BeanInstances instances = new BeanInstances(new Beans(List.of(bean)));
+    final Object instance = instances.supplyInstance(null, bean);
+    assertNotSame(instance, instances.supplyInstance(null, bean));
+    assertNull(instances.findInstance(bean));
+    assertEquals(2, creations.get());
+  }
+
+  @Test
+  final void testUnknownBeansAreRefused() {
+    final Beans beans = new Beans(List.of(Bean.of("hello")));
+    final BeanInstances instances = new BeanInstances(beans);
+    final Factory<Object> factory = c -> new Object();
+    final Bean<Object> unknown = Bean.of(factory, Id.of(Selector.ofAny(Object.class), SINGLETON.id()));
+    assertNull(instances.findInstance(unknown));
+    assertThrows(IllegalArgumentException.class, () -> instances.supplyInstance(null, unknown));
+  }
+
+  @Test
+  final void testInstancesOfRemovedBeansAreEvicted() throws InterruptedException {
+    final Factory<Object> factory = c -> new Object();
+    final Bean<Object> removed = Bean.of(factory, Id.of(Selector.ofAny(Object.class), SINGLETON.id()));
+    final Bean<Object> kept = Bean.of(factory, Id.of(Selector.ofAny(Object.class), SINGLETON.id(), 1));
+    final Beans beans = new Beans(List.of(removed, kept));
+    final BeanInstances instances = new BeanInstances(beans);
+    final WeakReference<Object> instance = new WeakReference<>(instances.supplyInstance(null, removed));
+    beans.remove(List.of(removed));
+    assertNull(instances.findInstance(removed));
+    // Creating any instance evicts those of removed Beans.
+    instances.supplyInstance(null, kept);
+    for (int i = 0; i < 50 && instance.get() != null; i++) {
+      System.gc();
+      Thread.sleep(20L);
+    }
+    assertNull(instance.get());
+  }
+
+  @Test
+  final void testSingletonsAreUsedAsIs() {
+    final Bean<String> hello = Bean.of("hello");
+    final BeanInstances instances = new BeanInstances(new Beans(List.of(hello)));
+    assertSame("hello", instances.supplyInstance(null, hello));
+    assertSame("hello", instances.findInstance(Selector.ofAny(String.class)));
+  }
+
+}
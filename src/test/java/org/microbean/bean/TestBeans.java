@@ -0,0 +1,268 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2022 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.bean;
+
+import java.io.Serializable;
+
+import java.lang.ref.WeakReference;
+
+import java.util.Collection;
+import java.util.List;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import org.microbean.qualifier.Qualifier;
+import org.microbean.qualifier.Qualifiers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import static org.microbean.scope.Scope.SINGLETON;
+
+final class TestBeans {
+
+  private TestBeans() {
+    super();
+  }
+
+  @Test
+  final void testIndexedSelectionMatchesLinearScan() {
+    final Qualifiers<?> red = Qualifiers.of(Qualifier.of("red"));
+    final Beans beans =
+      new Beans(List.of(Bean.of("hello"),
+                        Bean.of(Integer.valueOf(42)),
+                        Bean.of(Long.valueOf(42L)),
+                        Bean.of(Value.of("red"), Id.of(Selector.of(red, String.class), SINGLETON.id()))));
+    for (final Selector s : List.of(Selector.ofAny(String.class),
+                                    Selector.ofAny(CharSequence.class),
+                                    Selector.ofAny(Number.class),
+                                    Selector.ofAny(Serializable.class),
+                                    Selector.ofAny(Object.class),
+                                    Selector.ofDefault(Integer.class),
+                                    Selector.ofDefault(String.class),
+                                    Selector.of(red, CharSequence.class),
+                                    Selector.ofAny(Runnable.class))) {
+      assertEquals(beans.beans().filter(s::selects).toList(), beans.beans(s).toList());
+    }
+  }
+
+  @Test
+  final void testSealing() {
+    final Beans beans = new Beans(List.of(Bean.of("hello"), Bean.of(Integer.valueOf(42))));
+    final Selector observed = Selector.ofAny(CharSequence.class);
+    final Selector declared = Selector.ofAny(Number.class);
+    final List<Bean<?>> observedBeans = beans.beans(observed).toList();
+    beans.seal(List.of(declared));
+    assertEquals(0, beans.cacheStatistics().size());
+    assertEquals(observedBeans, beans.beans(observed).toList());
+    assertEquals(beans.beans().filter(declared::selects).toList(), beans.beans(declared).toList());
+    assertEquals(0, beans.cacheStatistics().size());
+  }
+
+  @Test
+  final void testAddAndRemove() {
+    final Beans beans = new Beans(List.of(Bean.of("hello")));
+    final Selector strings = Selector.ofAny(String.class);
+    final Selector numbers = Selector.ofAny(Number.class);
+    assertEquals(1L, beans.beans(strings).count());
+    assertEquals(0L, beans.beans(numbers).count());
+    final Bean<Integer> integerBean = Bean.of(Integer.valueOf(42));
+    assertEquals(1L, beans.add(List.of(integerBean)));
+    final long misses = beans.cacheStatistics().misses();
+    assertEquals(1L, beans.beans(strings).count()); // carried forward
+    assertEquals(misses, beans.cacheStatistics().misses());
+    assertEquals(List.of(integerBean), beans.beans(numbers).toList());
+    assertEquals(2L, beans.remove(List.of(integerBean)));
+    assertEquals(0L, beans.beans(numbers).count());
+    assertEquals(2L, beans.remove(List.of(integerBean)));
+  }
+
+  @Test
+  final void testOrdinals() {
+    final Bean<String> hello = Bean.of("hello");
+    final Bean<Integer> integerBean = Bean.of(Integer.valueOf(42));
+    final Bean<Long> longBean = Bean.of(Long.valueOf(42L));
+    final Beans beans = new Beans(List.of(hello, integerBean));
+    final int helloOrdinal = beans.ordinal(hello);
+    final int integerOrdinal = beans.ordinal(integerBean);
+    assertEquals(hello, beans.bean(helloOrdinal));
+    assertEquals(-1, beans.ordinal(longBean));
+    beans.add(List.of(longBean));
+    beans.remove(List.of(integerBean));
+    assertEquals(helloOrdinal, beans.ordinal(hello));
+    assertNull(beans.bean(integerOrdinal));
+    assertEquals(-1, beans.ordinal(integerBean));
+    assertEquals(beans.ordinalLimit() - 1, beans.ordinal(longBean));
+  }
+
+  @Test
+  final void testDefaultBean() {
+    final Bean<String> hello = Bean.of("hello");
+    final Bean<Long> longBean = Bean.of(Long.valueOf(42L));
+    final Beans beans = new Beans(List.of(hello));
+    assertSame(hello, beans.defaultBean(String.class));
+    assertSame(hello, beans.defaultBean(String.class));
+    assertThrows(UnsatisfiedResolutionException.class, () -> beans.defaultBean(Long.class));
+    beans.add(List.of(longBean));
+    assertSame(longBean, beans.defaultBean(Long.class));
+    assertSame(hello, beans.defaultBean(String.class));
+  }
+
+  @Test
+  final void testDefaultBeanDoesNotRetainBeans() throws InterruptedException {
+    final WeakReference<Beans> beans = defaultBeanOfNewBeans();
+    for (int i = 0; i < 50 && beans.get() != null; i++) {
+      System.gc();
+      Thread.sleep(20L);
+    }
+    assertNull(beans.get());
+  }
+
+  private static final WeakReference<Beans> defaultBeanOfNewBeans() {
+    final Beans beans = new Beans(List.of(Bean.of("hello")));
+    assertEquals("hello", beans.defaultBean(String.class).factory().singleton());
+    return new WeakReference<>(beans);
+  }
+
+  @Test
+  final void testSingleton() {
+    final Beans beans = new Beans(List.of(Bean.of("hello")));
+    final Selector strings = Selector.ofAny(String.class);
+    assertEquals("hello", beans.singleton(strings));
+    assertSame(beans.<String>singleton(strings), beans.singleton(Selector.ofAny(String.class)));
+  }
+
+  @Test
+  final void testBatchResolution() {
+    final Beans beans = new Beans(List.of(Bean.of("hello"), Bean.of(Integer.valueOf(42)), Bean.of(Long.valueOf(42L))));
+    final Selector strings = Selector.ofAny(String.class);
+    final Selector numbers = Selector.ofAny(Number.class);
+    final Selector runnables = Selector.ofAny(Runnable.class);
+    final List<Resolution> resolutions = beans.resolve(strings, numbers, runnables, strings);
+    assertEquals(4, resolutions.size());
+    assertSame(strings, resolutions.get(0).selector());
+    assertSame(runnables, resolutions.get(2).selector());
+    // Duplicates are resolved once.
+    assertSame(resolutions.get(0).bean(), resolutions.get(3).bean());
+    assertSame(resolutions.get(0).exception(), resolutions.get(3).exception());
+  }
+
+  @Test
+  final void testBatchResolutionFailsOncePerSelector() {
+    final AtomicInteger failures = new AtomicInteger();
+    final Resolver resolver = new Resolver() {
+        @Override
+        protected final <T extends Alternate> T fail(final Selector selector, final Collection<? extends Alternate> unresolved) {
+          failures.incrementAndGet();
+          return super.fail(selector, unresolved);
+        }
+      };
+    final Beans beans = new Beans(List.of(Bean.of(Integer.valueOf(42)), Bean.of(Long.valueOf(42L))), resolver);
+    final Selector numbers = Selector.ofAny(Number.class);
+    final Selector runnables = Selector.ofAny(Runnable.class);
+    final List<Resolution> resolutions = beans.resolve(numbers, runnables, numbers);
+    assertTrue(resolutions.get(0).exception() instanceof AmbiguousResolutionException);
+    assertTrue(resolutions.get(1).exception() instanceof UnsatisfiedResolutionException);
+    // Each distinct failing Selector is resolved, and fails, once.
+    assertEquals(2, failures.get());
+  }
+
+  @Test
+  final void testDeduplication() {
+    final Bean<String> a = Bean.of("a");
+    final Bean<String> b = Bean.of("b");
+    final Beans beans = new Beans(List.of(a, b));
+    final List<Bean<?>> strings = beans.beans(Selector.ofAny(String.class)).toList();
+    assertEquals(List.of(a, b), strings);
+    // The two Beans' Ids are equal, so they now share one.
+    assertSame(strings.get(0).id(), strings.get(1).id());
+    assertTrue(beans.deduplicationStatistics().duplicates() >= 1L);
+  }
+
+  @Test
+  final void testRemovalReleasesDeduplicatedMetadata() {
+    final Bean<String> blue =
+      Bean.of(Value.of("blue"), Id.of(Selector.of(Qualifiers.of(Qualifier.of("blue")), String.class), SINGLETON.id()));
+    final Beans beans = new Beans(List.of(Bean.of("hello")));
+    final int qualifiers = beans.deduplicationStatistics().qualifiers();
+    beans.add(List.of(blue));
+    assertEquals(qualifiers + 1, beans.deduplicationStatistics().qualifiers());
+    beans.remove(List.of(blue));
+    assertEquals(qualifiers, beans.deduplicationStatistics().qualifiers());
+  }
+
+  @Test
+  final void testRemovalReleasesBeans() throws InterruptedException {
+    final Beans beans = new Beans(List.of(Bean.of("hello")));
+    final WeakReference<Bean<?>> removed = addSelectAndRemove(beans);
+    for (int i = 0; i < 50 && removed.get() != null; i++) {
+      System.gc();
+      Thread.sleep(20L);
+    }
+    assertNull(removed.get());
+    assertEquals(1L, beans.beans(Selector.ofAny(String.class)).count());
+  }
+
+  private static final WeakReference<Bean<?>> addSelectAndRemove(final Beans beans) {
+    final Selector blue = Selector.of(Qualifiers.of(Qualifier.of("blue")), String.class);
+    final Bean<String> bean = Bean.of(Value.of("blue"), Id.of(blue, SINGLETON.id()));
+    beans.add(List.of(bean));
+    // Cache Selections that select the Bean.
+    final Bean<?> contained = beans.bean(blue);
+    assertEquals(2L, beans.beans(Selector.ofAny(String.class)).count());
+    beans.remove(List.of(bean));
+    return new WeakReference<>(contained);
+  }
+
+  @Test
+  final void testResolution() {
+    final Bean<String> hello = Bean.of("hello");
+    final Beans beans = new Beans(List.of(hello, Bean.of(Integer.valueOf(42)), Bean.of(Long.valueOf(42L))));
+    assertSame(hello, beans.bean(Selector.ofAny(String.class)));
+    assertThrows(AmbiguousResolutionException.class, () -> beans.bean(Selector.ofAny(Number.class)));
+    assertThrows(UnsatisfiedResolutionException.class, () -> beans.bean(Selector.ofAny(Runnable.class)));
+  }
+
+  @Test
+  final void testUnsatisfiedCaching() {
+    final Beans beans = new Beans(List.of(Bean.of("hello")), new Resolver(Resolver::failWithoutStackTrace));
+    final Selector runnables = Selector.ofAny(Runnable.class);
+    final UnsatisfiedResolutionException e =
+      assertThrows(UnsatisfiedResolutionException.class, () -> beans.bean(runnables));
+    assertEquals(0, e.getStackTrace().length);
+    // The failure is cached, but every caller gets its own exception.
+    final UnsatisfiedResolutionException e2 =
+      assertThrows(UnsatisfiedResolutionException.class, () -> beans.bean(Selector.ofAny(Runnable.class)));
+    assertNotSame(e, e2);
+    assertEquals(e.selector(), e2.selector());
+    assertEquals(1, beans.unsatisfiedCacheStatistics().size());
+    assertEquals(0, beans.cacheStatistics().size());
+    // The miss was recorded only against the cache of unsatisfied
+    // Selections.
+    assertEquals(1L, beans.unsatisfiedCacheStatistics().misses());
+    assertEquals(0L, beans.cacheStatistics().misses());
+    assertNotNull(e.getMessage());
+  }
+
+}
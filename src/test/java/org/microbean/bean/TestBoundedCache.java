@@ -0,0 +1,79 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2022 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.bean;
+
+import java.lang.ref.WeakReference;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+final class TestBoundedCache {
+
+  private TestBoundedCache() {
+    super();
+  }
+
+  @Test
+  final void testSizeStaysBoundedAndHotKeysStayResident() {
+    final BoundedCache<Integer, String> cache = new BoundedCache<>(16);
+    for (int i = 0; i < 10_000; i++) {
+      // Key 0 is requested on every iteration; every other key is
+      // requested once.
+      assertEquals("0", cache.computeIfAbsent(0, String::valueOf));
+      assertEquals(String.valueOf(i), cache.computeIfAbsent(i, String::valueOf));
+      assertTrue(cache.size() <= 16);
+    }
+    final long misses = cache.statistics().misses();
+    cache.computeIfAbsent(0, String::valueOf);
+    assertEquals(misses, cache.statistics().misses());
+  }
+
+  @Test
+  final void testRemovedValuesAreCollectableBeforeTheCacheFills() throws InterruptedException {
+    final BoundedCache<Integer, Object> cache = new BoundedCache<>(100);
+    for (int i = 0; i < 10; i++) {
+      cache.putIfAbsent(-1 - i, new Object());
+    }
+    final WeakReference<Object> removed = churn(cache);
+    assertEquals(10, cache.size());
+    for (int i = 0; i < 50 && removed.get() != null; i++) {
+      System.gc();
+      Thread.sleep(20L);
+    }
+    assertNull(removed.get());
+  }
+
+  // Puts and removes many values while the cache stays well below
+  // capacity, and returns a reference to the first value removed.
+  private static final WeakReference<Object> churn(final BoundedCache<Integer, Object> cache) {
+    WeakReference<Object> first = null;
+    for (int i = 0; i < 1_000; i++) {
+      final Object value = new Object();
+      assertSame(value, cache.putIfAbsent(i, value));
+      assertTrue(cache.remove(i, value));
+      if (first == null) {
+        first = new WeakReference<>(value);
+      }
+    }
+    return first;
+  }
+
+}
@@ -0,0 +1,189 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2022 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.bean;
+
+import java.io.IOException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+final class TestLazySingletonFactory {
+
+  private TestLazySingletonFactory() {
+    super();
+  }
+
+  @Test
+  final void testContendedCreationHappensOnce() throws Exception {
+    final AtomicInteger creations = new AtomicInteger();
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final Factory<Object> factory = c -> {
+      creations.incrementAndGet();
+      started.countDown();
+      await(release);
+      return new Object();
+    };
+    final LazySingletonFactory<Object> f = new LazySingletonFactory<>(factory);
+    final ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      final List<Future<Object>> futures = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        futures.add(executor.submit(() -> f.create(null)));
+      }
+      started.await();
+      assertNull(f.singleton());
+      release.countDown();
+      final Object product = futures.get(0).get(10L, TimeUnit.SECONDS);
+      for (final Future<Object> future : futures) {
+        assertSame(product, future.get(10L, TimeUnit.SECONDS));
+      }
+      assertSame(product, f.singleton());
+    } finally {
+      executor.shutdownNow();
+    }
+    assertEquals(1, creations.get());
+  }
+
+  @Test
+  final void testFailureReleasesWaitersAndAllowsRetry() throws Exception {
+    final AtomicInteger attempts = new AtomicInteger();
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final Factory<String> factory = c -> {
+      if (attempts.incrementAndGet() == 1) {
+        started.countDown();
+        await(release);
+        throw new IllegalArgumentException("first attempt");
+      }
+      return "second attempt";
+    };
+    final LazySingletonFactory<String> f = new LazySingletonFactory<>(factory);
+    final ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      final Future<String> creator = executor.submit(() -> f.create(null));
+      started.await();
+      // Either waits for, and receives, the failure, or arrives after
+      // it and retries; it never hangs.
+      final Future<String> waiter = executor.submit(() -> {
+          try {
+            return f.create(null);
+          } catch (final IllegalArgumentException e) {
+            return e.getMessage();
+          }
+        });
+      release.countDown();
+      final Throwable failure = assertThrows(Exception.class, () -> creator.get(10L, TimeUnit.SECONDS)).getCause();
+      assertTrue(failure instanceof IllegalArgumentException);
+      final String outcome = waiter.get(10L, TimeUnit.SECONDS);
+      assertTrue("first attempt".equals(outcome) || "second attempt".equals(outcome));
+    } finally {
+      executor.shutdownNow();
+    }
+    assertEquals("second attempt", f.create(null));
+    assertEquals("second attempt", f.singleton());
+  }
+
+  @Test
+  final void testCheckedFailureIsRethrownAndAllowsRetry() {
+    final AtomicInteger attempts = new AtomicInteger();
+    final Factory<String> factory = c -> {
+      if (attempts.incrementAndGet() == 1) {
+        throw TestLazySingletonFactory.<RuntimeException>sneakyThrow(new IOException("checked"));
+      }
+      return "retried";
+    };
+    final LazySingletonFactory<String> f = new LazySingletonFactory<>(factory);
+    assertThrows(IOException.class, () -> f.create(null));
+    assertNull(f.singleton());
+    assertEquals("retried", f.create(null));
+  }
+
+  @Test
+  final void testCircularCreationFails() {
+    final AtomicInteger attempts = new AtomicInteger();
+    final List<LazySingletonFactory<String>> self = new ArrayList<>(1);
+    final Factory<String> factory = c -> {
+      if (attempts.incrementAndGet() == 1) {
+        return self.get(0).create(c);
+      }
+      return "not circular";
+    };
+    final LazySingletonFactory<String> f = new LazySingletonFactory<>(factory);
+    self.add(f);
+    assertThrows(IllegalStateException.class, () -> f.create(null));
+    // The failure did not leave the factory stuck.
+    assertEquals("not circular", f.create(null));
+  }
+
+  @Test
+  final void testWaitingIsInterruptible() throws Exception {
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final Factory<String> factory = c -> {
+      started.countDown();
+      await(release);
+      return "created";
+    };
+    final LazySingletonFactory<String> f = new LazySingletonFactory<>(factory);
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      final Future<String> creator = executor.submit(() -> f.create(null));
+      started.await();
+      Thread.currentThread().interrupt();
+      assertThrows(CancellationException.class, () -> f.create(null));
+      // The interrupt status was restored (and is cleared here).
+      assertTrue(Thread.interrupted());
+      release.countDown();
+      assertEquals("created", creator.get(10L, TimeUnit.SECONDS));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static final void await(final CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e.getMessage(), e);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static final <T extends Throwable> RuntimeException sneakyThrow(final Throwable t) throws T {
+    throw (T)t;
+  }
+
+}
@@ -0,0 +1,164 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2022 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.bean;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+final class TestPipeline {
+
+  private TestPipeline() {
+    super();
+  }
+
+  @Test
+  final void testProduceOnly() {
+    final List<String> trace = new ArrayList<>();
+    assertSameAsCreate(new Factory<String>() {
+        @Override
+        public final String produce(final Creation<String> c) {
+          trace.add("produce");
+          return "a";
+        }
+      }, trace);
+  }
+
+  @Test
+  final void testBridgeMethods() {
+    // Each override of a generic stage is reached by way of a
+    // compiler-generated bridge method taking Object.
+    final List<String> trace = new ArrayList<>();
+    assertSameAsCreate(new Factory<String>() {
+        @Override
+        public final String produce(final Creation<String> c) {
+          trace.add("produce");
+          return "a";
+        }
+        @Override
+        public final String initialize(final String s, final Creation<String> c) {
+          trace.add("initialize");
+          return s + "b";
+        }
+        @Override
+        public final String intercept(final String s, final Creation<String> c) {
+          trace.add("intercept");
+          return s + "c";
+        }
+      }, trace);
+  }
+
+  @Test
+  final void testSubInterfaceDefaultOverrides() {
+    final List<String> trace = new ArrayList<>();
+    final class Traced implements Decorating {
+      @Override
+      public final String produce(final Creation<String> c) {
+        trace.add("produce");
+        return "a";
+      }
+    }
+    assertSameAsCreate(new Traced(), trace);
+    assertEquals("(a)!", Pipeline.createWith(new Traced(), null));
+  }
+
+  @Test
+  final void testInheritedOverrides() {
+    final List<String> trace = new ArrayList<>();
+    abstract class Initializing implements Factory<String> {
+      @Override
+      public String initialized(final String s, final Creation<String> c) {
+        trace.add("initialized");
+        return s + "b";
+      }
+    }
+    final class Concrete extends Initializing {
+      @Override
+      public final String produce(final Creation<String> c) {
+        trace.add("produce");
+        return "a";
+      }
+    }
+    assertSameAsCreate(new Concrete(), trace);
+  }
+
+  @Test
+  final void testCreateOverride() {
+    final List<String> trace = new ArrayList<>();
+    assertSameAsCreate(new Factory<String>() {
+        @Override
+        public final String produce(final Creation<String> c) {
+          trace.add("produce");
+          return "a";
+        }
+        @Override
+        public final String create(final Creation<String> c) {
+          trace.add("create");
+          return this.produce(c) + "z";
+        }
+        @Override
+        public final String intercept(final String s, final Creation<String> c) {
+          // Never reached, since create(Creation) does not call it.
+          trace.add("intercept");
+          return s + "c";
+        }
+      }, trace);
+  }
+
+  @Test
+  final void testLambdaFactory() {
+    final List<String> trace = new ArrayList<>();
+    final Factory<String> f = c -> {
+      trace.add("produce");
+      return "a";
+    };
+    assertSameAsCreate(f, trace);
+    final Decorating d = c -> "a";
+    assertEquals(d.create(null), Pipeline.createWith(d, null));
+  }
+
+  // Checks that Pipeline.createWith(Factory, Creation) returns what
+  // Factory.create(Creation) returns and invokes the same stages in
+  // the same order.
+  private static final <I> void assertSameAsCreate(final Factory<I> f, final List<String> trace) {
+    trace.clear();
+    final I expected = f.create(null);
+    final List<String> expectedTrace = List.copyOf(trace);
+    trace.clear();
+    assertEquals(expected, Pipeline.createWith(f, null));
+    assertEquals(expectedTrace, trace);
+  }
+
+  // Overrides stages of Factory with defaults of its own.
+  private static interface Decorating extends Factory<String> {
+
+    @Override
+    public default String interceptedProduce(final Creation<String> c) {
+      return "(" + this.produce(c) + ")";
+    }
+
+    @Override
+    public default String intercept(final String s, final Creation<String> c) {
+      return s + "!";
+    }
+
+  }
+
+}
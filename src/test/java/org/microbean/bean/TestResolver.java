@@ -0,0 +1,132 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2022 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.bean;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+final class TestResolver {
+
+  private TestResolver() {
+    super();
+  }
+
+  @Test
+  final void testPlanTreatsIdenticalAlternatesAsOne() {
+    final Resolver resolver = new Resolver();
+    final Alt a = new Alt(false, 0);
+    final Alt b = new Alt(false, 0);
+    assertSame(a, resolver.resolve(null, List.of(a, a)));
+    assertSame(a, resolver.plan(List.of(a, a)).resolve(null));
+    final AmbiguousResolutionException e =
+      assertThrows(AmbiguousResolutionException.class, () -> resolver.plan(List.of(a, b, a)).resolve(null));
+    assertEquals(List.of(a, b), List.copyOf(e.alternates()));
+  }
+
+  @Test
+  final void testParallelAndSequentialReductionAgree() {
+    final Resolver sequential = new Resolver(Resolver::failWithoutStackTrace, 0);
+    final Resolver parallel = new Resolver(Resolver::failWithoutStackTrace, 2);
+    final Random random = new Random(42L);
+    for (int run = 0; run < 50; run++) {
+      // Large enough to be split into several fork-join leaves.
+      final Alt[] alts = new Alt[5_000];
+      for (int i = 0; i < alts.length; i++) {
+        // Occasionally include a non-alternate, which is preferred to
+        // every alternate.
+        alts[i] = new Alt(run % 3 != 2 || random.nextInt(2_000) != 0, random.nextInt(100));
+      }
+      if (run % 3 == 0) {
+        // Ensure a single winner.
+        alts[random.nextInt(alts.length)] = new Alt(true, 100);
+      }
+      final List<Alt> list = List.of(alts);
+      Object s;
+      try {
+        s = sequential.resolve(null, list);
+      } catch (final AmbiguousResolutionException e) {
+        s = List.copyOf(e.alternates());
+      }
+      Object p;
+      try {
+        p = parallel.resolve(null, list);
+      } catch (final AmbiguousResolutionException e) {
+        p = List.copyOf(e.alternates());
+      }
+      assertEquals(s, p);
+      assertEquals(s, planned(sequential, list));
+    }
+  }
+
+  @Test
+  @SuppressWarnings("deprecation")
+  final void testOverridesOfDeprecatedFailAreHonored() {
+    final Alt fallback = new Alt(false, 0);
+    final Resolver resolver = new Resolver() {
+        @Override
+        @SuppressWarnings("unchecked")
+        protected final <T extends Alternate> T fail(final Selector selector) {
+          return (T)fallback;
+        }
+      };
+    assertSame(fallback, resolver.resolve(null, List.<Alt>of()));
+    assertSame(fallback, resolver.resolve(null, new Alt[0]));
+    assertSame(fallback, resolver.plan(List.<Alt>of()).resolve(null));
+    // Ambiguity still goes to the failure handler.
+    assertThrows(AmbiguousResolutionException.class,
+                 () -> resolver.resolve(null, List.of(new Alt(false, 0), new Alt(false, 0))));
+  }
+
+  private static final Object planned(final Resolver resolver, final List<Alt> list) {
+    try {
+      return resolver.plan(list).resolve(null);
+    } catch (final AmbiguousResolutionException e) {
+      return List.copyOf(e.alternates());
+    }
+  }
+
+  private static final class Alt implements Alternate {
+
+    private final boolean alternate;
+
+    private final int priority;
+
+    private Alt(final boolean alternate, final int priority) {
+      super();
+      this.alternate = alternate;
+      this.priority = priority;
+    }
+
+    @Override // Alternate
+    public final boolean alternate() {
+      return this.alternate;
+    }
+
+    @Override // Prioritized
+    public final int priority() {
+      return this.priority;
+    }
+
+  }
+
+}
@@ -0,0 +1,97 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright © 2022 microBean™.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.microbean.bean;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+import java.lang.ref.WeakReference;
+
+import org.junit.jupiter.api.Test;
+
+import org.microbean.type.JavaType;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+final class TestSelector {
+
+  private TestSelector() {
+    super();
+  }
+
+  @Test
+  final void testCachedSelectorsEqualUncachedOnes() {
+    for (final Class<?> c : new Class<?>[] { String.class, Integer.class, Runnable.class }) {
+      assertEquals(Selector.of(Selector.ANY_QUALIFIERS, JavaType.of(c)), Selector.ofAny(c));
+      assertEquals(Selector.of(Selector.DEFAULT_QUALIFIERS, JavaType.of(c)), Selector.ofDefault(c));
+      assertEquals(Selector.of(Selector.ANY_AND_DEFAULT_QUALIFIERS, JavaType.of(c)), Selector.ofAnyAndDefault(c));
+      assertSame(Selector.ofAny(c), Selector.ofAny(c));
+    }
+  }
+
+  @Test
+  final void testCachedSelectorsDoNotRetainClasses() throws InterruptedException {
+    final WeakReference<ClassLoader> loader = selectEphemeralClass();
+    for (int i = 0; i < 50 && loader.get() != null; i++) {
+      System.gc();
+      Thread.sleep(20L);
+    }
+    assertNull(loader.get());
+  }
+
+  // Caches Selectors for a class defined by a throwaway ClassLoader
+  // and returns a weak reference to that ClassLoader.
+  private static final WeakReference<ClassLoader> selectEphemeralClass() {
+    final EphemeralLoader loader = new EphemeralLoader();
+    final Class<?> c = loader.define(Ephemeral.class);
+    Selector.ofAny(c);
+    Selector.ofDefault(c);
+    Selector.ofAnyAndDefault(c);
+    return new WeakReference<>(loader);
+  }
+
+  // Defined again, by an EphemeralLoader, under the same name.
+  private static final class Ephemeral {
+
+    private Ephemeral() {
+      super();
+    }
+
+  }
+
+  private static final class EphemeralLoader extends ClassLoader {
+
+    private EphemeralLoader() {
+      super(null);
+    }
+
+    private final Class<?> define(final Class<?> c) {
+      final String name = c.getName();
+      try (final InputStream is = c.getResourceAsStream(name.substring(name.lastIndexOf('.') + 1) + ".class")) {
+        final byte[] bytes = is.readAllBytes();
+        return this.defineClass(name, bytes, 0, bytes.length);
+      } catch (final IOException e) {
+        throw new UncheckedIOException(e.getMessage(), e);
+      }
+    }
+
+  }
+
+}